@@ -0,0 +1,114 @@
+package platypus.components;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe list of {@code ActionListener}s for components which fire
+ * their own action events. Listeners are kept in an immutable array which is
+ * replaced on each change, so listeners may be added and removed from any
+ * thread without locking, and notification iterates over a consistent
+ * snapshot.
+ *
+ * @author Jingchen Xu
+ */
+public class PActionListenerList implements Serializable {
+
+    private static final long serialVersionUID = 2934077394916187163L;
+
+    private static final ActionListener[] EMPTY = new ActionListener[0];
+    private static final AtomicReferenceFieldUpdater<PActionListenerList, ActionListener[]> UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(PActionListenerList.class, ActionListener[].class, "listeners");
+
+    private volatile ActionListener[] listeners = EMPTY;
+
+    /**
+     * Adds a listener to the end of the list. Null listeners are ignored.
+     *
+     * @param listener the listener to add
+     */
+    public void add(ActionListener listener) {
+
+        if (listener == null)
+            return;
+
+        ActionListener[] current, updated;
+        do {
+            current = listeners;
+            updated = new ActionListener[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = listener;
+        } while (!UPDATER.compareAndSet(this, current, updated));
+    }
+
+    /**
+     * Removes the first occurrence of a listener from the list.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener was found and removed
+     */
+    public boolean remove(ActionListener listener) {
+
+        ActionListener[] current, updated;
+        do {
+            current = listeners;
+
+            int index = -1;
+            for (int i = 0; i < current.length && index < 0; i++) {
+                if (current[i] == listener)
+                    index = i;
+            }
+            if (index < 0)
+                return false;
+
+            updated = current.length == 1 ? EMPTY : new ActionListener[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+        } while (!UPDATER.compareAndSet(this, current, updated));
+
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of the listeners currently in the list.
+     *
+     * @return the listeners, in the order they were added
+     */
+    public ActionListener[] getListeners() {
+        return listeners.clone();
+    }
+
+    /**
+     * Checks whether the list has no listeners. Components can use this to
+     * skip preparing an event nobody will receive.
+     *
+     * @return true if there are no listeners
+     */
+    public boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+    /**
+     * Notifies every listener of an action. The event is only created if
+     * there is at least one listener.
+     *
+     * @param source the object on which the event occurred
+     * @param command the action command
+     * @param when the time the event occurred
+     * @param modifiers the modifier keys held down during the event
+     */
+    public void fire(Object source, String command, long when, int modifiers) {
+
+        ActionListener[] snapshot = listeners;
+        if (snapshot.length == 0)
+            return;
+
+        ActionEvent evt = new ActionEvent(source, ActionEvent.ACTION_PERFORMED, command, when,
+                modifiers);
+        for (ActionListener listener : snapshot)
+            listener.actionPerformed(evt);
+    }
+
+}
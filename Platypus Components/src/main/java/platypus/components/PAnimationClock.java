@@ -0,0 +1,118 @@
+package platypus.components;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * A single shared clock which drives all running component animations from one
+ * timer on the event dispatch thread. The timer only runs while at least one
+ * animation is active and stops itself once every animation has finished.
+ * <p>
+ * Animations may be started and stopped from any thread, but are always ticked
+ * on the event dispatch thread.
+ *
+ * @author Jingchen Xu
+ */
+public class PAnimationClock {
+
+    /** delay between frames, in ms */
+    public static final int FRAME_DELAY = 16;
+
+    private static final Set<Animation> ANIMATIONS = Collections
+            .newSetFromMap(new ConcurrentHashMap<Animation, Boolean>());
+
+    private static final Timer TIMER = new Timer(FRAME_DELAY, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            tick();
+        }
+    });
+
+    private PAnimationClock() {}
+
+    /**
+     * A time-based animation driven by the clock.
+     */
+    public interface Animation {
+
+        /**
+         * Advances the animation to the given time. Called on the event
+         * dispatch thread once per frame while the animation is running.
+         *
+         * @param now the current time, as given by {@link System#nanoTime()}
+         * @return true if the animation should keep running, false if it has
+         *         finished
+         */
+        boolean tick(long now);
+    }
+
+    /**
+     * Starts ticking an animation. Has no effect if the animation is already
+     * running.
+     *
+     * @param animation the animation to start
+     */
+    public static void start(Animation animation) {
+
+        if (ANIMATIONS.add(animation)) {
+            if (SwingUtilities.isEventDispatchThread()) {
+                startTimer();
+            } else {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        startTimer();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Stops ticking an animation. Has no effect if the animation is not
+     * running. The clock stops on its next frame if nothing is left to
+     * animate.
+     *
+     * @param animation the animation to stop
+     */
+    public static void stop(Animation animation) {
+        ANIMATIONS.remove(animation);
+    }
+
+    /**
+     * Checks whether an animation is currently being ticked.
+     *
+     * @param animation the animation to check
+     * @return true if the animation is running
+     */
+    public static boolean isRunning(Animation animation) {
+        return ANIMATIONS.contains(animation);
+    }
+
+    private static void startTimer() {
+        if (!ANIMATIONS.isEmpty() && !TIMER.isRunning())
+            TIMER.start();
+    }
+
+    private static void tick() {
+
+        long now = System.nanoTime();
+        Iterator<Animation> it = ANIMATIONS.iterator();
+        while (it.hasNext()) {
+            if (!it.next().tick(now))
+                it.remove();
+        }
+
+        // stop the clock when there is nothing left to animate
+        if (ANIMATIONS.isEmpty())
+            TIMER.stop();
+    }
+
+}
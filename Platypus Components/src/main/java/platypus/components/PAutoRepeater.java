@@ -0,0 +1,172 @@
+package platypus.components;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.event.InputEvent;
+
+import javax.swing.AbstractButton;
+import javax.swing.ButtonModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Adds press-and-hold auto-repeat to a button. A step is taken as soon as the
+ * button is pressed; if it is held past an initial delay, steps repeat at a
+ * rate which accelerates the longer the button is held.
+ * <p>
+ * Repeats are driven by the shared {@link PAnimationClock} and coalesced per
+ * frame: however many steps fall due during a frame, the handler is called
+ * once with their total, so that listeners and displays update at most once
+ * per frame.
+ *
+ * @author Jingchen Xu
+ */
+public class PAutoRepeater {
+
+    /** default time a button must be held before repeating starts, in ms */
+    public static final int DEFAULT_INITIAL_DELAY = 400;
+
+    /** default repeat rate when repeating starts, in steps per second */
+    public static final double DEFAULT_INITIAL_RATE = 8;
+
+    /** default increase in repeat rate, in steps per second per second */
+    public static final double DEFAULT_ACCELERATION = 24;
+
+    /** default maximum repeat rate, in steps per second */
+    public static final double DEFAULT_MAXIMUM_RATE = 240;
+
+    /**
+     * Receives the steps taken by an auto-repeating button.
+     */
+    public interface StepHandler {
+
+        /**
+         * Takes a number of steps. Called on the event dispatch thread, at
+         * most once per frame.
+         *
+         * @param steps the number of steps to take, at least 1
+         * @param when the time the steps were taken, in ms
+         * @param modifiers the modifier keys held when the button was pressed
+         */
+        void step(int steps, long when, int modifiers);
+    }
+
+    private final StepHandler handler;
+
+    private int initialDelay = DEFAULT_INITIAL_DELAY;
+    private double initialRate = DEFAULT_INITIAL_RATE;
+    private double acceleration = DEFAULT_ACCELERATION;
+    private double maximumRate = DEFAULT_MAXIMUM_RATE;
+
+    // repeat state fields
+    private boolean pressed = false;
+    private long pressStart;
+    private long stepsTaken;
+    private int modifiers;
+
+    private final PAnimationClock.Animation repeat = new PAnimationClock.Animation() {
+        @Override
+        public boolean tick(long now) {
+            return tickRepeat(now);
+        }
+    };
+
+    /**
+     * Installs auto-repeat on a button. The handler replaces any action
+     * listener that would otherwise perform the step on click.
+     *
+     * @param button the button to auto-repeat
+     * @param handler the handler taking the steps
+     * @return the installed repeater, whose timing may be adjusted
+     */
+    public static PAutoRepeater install(AbstractButton button, StepHandler handler) {
+
+        final PAutoRepeater repeater = new PAutoRepeater(handler);
+        final ButtonModel model = button.getModel();
+        model.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                repeater.setPressed(model.isArmed() && model.isPressed());
+            }
+        });
+
+        return repeater;
+    }
+
+    private PAutoRepeater(StepHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Changes the timing of the auto-repeat.
+     *
+     * @param initialDelay time the button must be held before repeating
+     *            starts, in ms
+     * @param initialRate repeat rate when repeating starts, in steps per second
+     * @param acceleration increase in repeat rate, in steps per second per
+     *            second
+     * @param maximumRate maximum repeat rate, in steps per second
+     * @throws IllegalArgumentException if the acceleration is negative
+     */
+    public void setTiming(int initialDelay, double initialRate, double acceleration,
+            double maximumRate) {
+
+        if (acceleration < 0)
+            throw new IllegalArgumentException("acceleration cannot be negative");
+
+        this.initialDelay = initialDelay;
+        this.initialRate = initialRate;
+        this.acceleration = acceleration;
+        this.maximumRate = maximumRate;
+    }
+
+    private void setPressed(boolean pressed) {
+
+        if (pressed == this.pressed)
+            return;
+        this.pressed = pressed;
+
+        if (pressed) {
+            // keep the modifiers of the mouse or key event pressing the button
+            AWTEvent event = EventQueue.getCurrentEvent();
+            modifiers = event instanceof InputEvent ? ((InputEvent) event).getModifiers() : 0;
+
+            // take the first step immediately, then wait to repeat
+            pressStart = System.nanoTime();
+            stepsTaken = 0;
+            handler.step(1, System.currentTimeMillis(), modifiers);
+            PAnimationClock.start(repeat);
+        } else {
+            PAnimationClock.stop(repeat);
+        }
+    }
+
+    private boolean tickRepeat(long now) {
+
+        if (!pressed)
+            return false;
+
+        // take every step that has fallen due since the last frame
+        double t = (now - pressStart) / 1e9 - initialDelay / 1000.0;
+        long due = t <= 0 ? 0 : stepsDue(t);
+        if (due > stepsTaken) {
+            int steps = (int) Math.min(Integer.MAX_VALUE, due - stepsTaken);
+            stepsTaken = due;
+            handler.step(steps, System.currentTimeMillis(), modifiers);
+        }
+
+        return true;
+    }
+
+    private long stepsDue(double t) {
+
+        // rate rises linearly from the initial rate until it hits the maximum
+        double rampTime = acceleration > 0 ? (maximumRate - initialRate) / acceleration : 0;
+        if (acceleration == 0 || t <= rampTime)
+            return (long) (initialRate * t + acceleration * t * t / 2);
+
+        double rampSteps = initialRate * rampTime + acceleration * rampTime * rampTime / 2;
+        return (long) (rampSteps + maximumRate * (t - rampTime));
+    }
+
+}
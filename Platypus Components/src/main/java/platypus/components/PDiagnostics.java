@@ -0,0 +1,182 @@
+package platypus.components;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A low-overhead hook for recoverable problems detected by components, such
+ * as unparseable input. Each report increments a counter for its event type;
+ * reports can also be passed to listeners and logged, at a limited rate per
+ * event type, through {@code java.util.logging}.
+ * <p>
+ * Logging is off by default, and with no listeners a report costs little more
+ * than a counter increment. Reports may be made from any thread.
+ *
+ * @author Jingchen Xu
+ */
+public class PDiagnostics {
+
+    /**
+     * Receives diagnostic events as they are reported.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the reporting thread when an event is reported.
+         *
+         * @param type the event type
+         * @param source the component reporting the event
+         * @param detail the input or value involved, possibly null
+         */
+        void eventReported(String type, Object source, Object detail);
+    }
+
+    /** default number of log records per event type per second */
+    public static final int DEFAULT_LOG_RATE = 1;
+
+    private static final Logger LOGGER = Logger.getLogger("platypus.components");
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final ConcurrentHashMap<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+    private static final CopyOnWriteArrayList<Listener> LISTENERS = new CopyOnWriteArrayList<Listener>();
+
+    private static volatile Level logLevel = null;
+    private static volatile int logRate = DEFAULT_LOG_RATE;
+
+    private PDiagnostics() {}
+
+    /**
+     * Reports an event.
+     *
+     * @param type the event type, conventionally the reporting class and a
+     *            short description
+     * @param source the component reporting the event
+     * @param detail the input or value involved, possibly null; it is only
+     *            converted to a string if the event is logged
+     */
+    public static void report(String type, Object source, Object detail) {
+
+        Counter counter = COUNTERS.get(type);
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = COUNTERS.putIfAbsent(type, counter);
+            if (existing != null)
+                counter = existing;
+        }
+        counter.count.increment();
+
+        for (Listener listener : LISTENERS)
+            listener.eventReported(type, source, detail);
+
+        Level level = logLevel;
+        if (level != null && LOGGER.isLoggable(level) && counter.acquireLogPermit(logRate)) {
+            LOGGER.log(level, "{0}: {1}", new Object[] { type, detail });
+        }
+    }
+
+    /**
+     * Returns the number of times an event type has been reported.
+     *
+     * @param type the event type
+     * @return the count since the last reset
+     */
+    public static long getCount(String type) {
+        Counter counter = COUNTERS.get(type);
+        return counter == null ? 0 : counter.count.sum();
+    }
+
+    /**
+     * Returns the number of times each event type has been reported.
+     *
+     * @return a snapshot of the counts since the last reset, by event type
+     */
+    public static Map<String, Long> getCounts() {
+
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet())
+            counts.put(entry.getKey(), entry.getValue().count.sum());
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public static void reset() {
+        COUNTERS.clear();
+    }
+
+    /**
+     * Enables or disables logging of reported events.
+     *
+     * @param level the level to log events at, or null to disable logging
+     */
+    public static void setLogLevel(Level level) {
+        logLevel = level;
+    }
+
+    /**
+     * Returns the level events are logged at.
+     *
+     * @return the log level, or null if logging is disabled
+     */
+    public static Level getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Sets how many events of each type may be logged per second. Further
+     * events are still counted and passed to listeners.
+     *
+     * @param perSecond the maximum log records per event type per second
+     */
+    public static void setLogRate(int perSecond) {
+        logRate = perSecond;
+    }
+
+    /**
+     * Adds a listener for reported events.
+     *
+     * @param listener the listener to add
+     */
+    public static void addListener(Listener listener) {
+        LISTENERS.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener for reported events.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Counts one event type and limits how often it is logged.
+     */
+    private static final class Counter {
+
+        final LongAdder count = new LongAdder();
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private final AtomicLong windowLogged = new AtomicLong();
+
+        boolean acquireLogPermit(int perSecond) {
+
+            // start a new one-second window if the current one has passed
+            long now = System.nanoTime();
+            long start = windowStart.get();
+            if (now - start >= NANOS_PER_SECOND && windowStart.compareAndSet(start, now))
+                windowLogged.set(0);
+
+            return windowLogged.incrementAndGet() <= perSecond;
+        }
+    }
+
+}
@@ -0,0 +1,408 @@
+package platypus.components;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+/**
+ * Validates the text of a document whenever it changes, running the validator
+ * once per burst of changes rather than once per document event. For example,
+ * {@code setText} fires both a removal and an insertion, but is validated
+ * once.
+ * <p>
+ * Input other than a document can be validated by binding a {@link Snapshot}
+ * instead, and reporting changes with {@link #inputChanged()}.
+ * <p>
+ * By default, changes are coalesced until the event dispatch thread finishes
+ * its current work. A delay can be set so that validation only runs once the
+ * text has stopped changing for that long. Expensive validators can be moved
+ * off the event dispatch thread with {@link #setExecutor(Executor)}; results
+ * of validations superseded by newer changes are then discarded.
+ * <p>
+ * Results are always delivered on the event dispatch thread.
+ *
+ * @author Jingchen Xu
+ * @param <R> the type of validation result
+ */
+public class PValidationBinder<R> {
+
+    /**
+     * Checks the text of a document.
+     *
+     * @param <R> the type of validation result
+     */
+    public interface Validator<R> {
+
+        /**
+         * Validates text. When run on the event dispatch thread, the text is
+         * a reused buffer which is only valid for the duration of the call.
+         *
+         * @param text the text of the document
+         * @return the validation result
+         * @throws Exception if validation fails
+         */
+        R validate(CharSequence text) throws Exception;
+    }
+
+    /**
+     * Captures input which is not held in a document, for binders created
+     * without one.
+     *
+     * @param <R> the type of validation result
+     */
+    public interface Snapshot<R> {
+
+        /**
+         * Captures the current input on the event dispatch thread and returns
+         * a task validating it. The task is run on the binder's executor, if
+         * any, so it must not read the UI itself.
+         *
+         * @return the validation task, or null if there is nothing to
+         *         validate, which is reported as a null result
+         */
+        Callable<R> capture();
+    }
+
+    /**
+     * Receives validation results on the event dispatch thread.
+     *
+     * @param <R> the type of validation result
+     */
+    public interface Handler<R> {
+
+        /**
+         * Called with the result of validating the latest text.
+         *
+         * @param result the validation result
+         * @param error the exception thrown by the validator, or null
+         */
+        void validated(R result, Throwable error);
+    }
+
+    private final Document document;
+    private final Validator<R> validator;
+    private final Snapshot<R> snapshot;
+    private final Handler<R> handler;
+    private final DocumentListener listener;
+    private final Segment segment = new Segment();
+
+    // scheduling fields
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private boolean dirty = false;
+    private int delay = 0;
+    private Timer timer;
+
+    // background fields
+    private Executor executor;
+    private int generation = 0;
+    private FutureTask<R> pending;
+
+    /**
+     * Binds a validator to a document. The document is not validated until it
+     * first changes or {@link #validateNow()} is called.
+     *
+     * @param document the document to validate
+     * @param validator the validator to run
+     * @param handler the handler to receive results
+     */
+    public PValidationBinder(Document document, Validator<R> validator, Handler<R> handler) {
+
+        this.document = document;
+        this.validator = validator;
+        this.snapshot = null;
+        this.handler = handler;
+
+        listener = new DocumentListener() {
+
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                changed();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                changed();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                changed();
+            }
+        };
+        document.addDocumentListener(listener);
+    }
+
+    /**
+     * Binds a validator to input captured by a snapshot. The input is not
+     * validated until {@link #inputChanged()} or {@link #validateNow()} is
+     * called.
+     *
+     * @param snapshot captures the input and returns the validation task
+     * @param handler the handler to receive results
+     */
+    public PValidationBinder(Snapshot<R> snapshot, Handler<R> handler) {
+
+        this.document = null;
+        this.validator = null;
+        this.snapshot = snapshot;
+        this.handler = handler;
+        this.listener = null;
+    }
+
+    /**
+     * Stops validating the input, and discards any pending validation.
+     */
+    public void unbind() {
+
+        if (document != null)
+            document.removeDocumentListener(listener);
+        cancel();
+    }
+
+    /**
+     * Reports that the input has changed, scheduling validation as a document
+     * change would. This may be called from any thread.
+     */
+    public void inputChanged() {
+        changed();
+    }
+
+    /**
+     * Discards any scheduled or running validation. Results of a running
+     * validation are never delivered.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     */
+    public void cancel() {
+
+        generation++; // invalidate results of any running validation
+        dirty = false;
+        scheduled.set(false);
+        if (timer != null)
+            timer.stop();
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /**
+     * Sets how long the text must stay unchanged before it is validated. With
+     * a delay of 0 (the default), validation runs as soon as the event
+     * dispatch thread is idle.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @param delay the validation delay, in ms
+     */
+    public void setDelay(int delay) {
+        this.delay = delay;
+        if (timer != null)
+            timer.setInitialDelay(delay);
+    }
+
+    /**
+     * Returns how long the text must stay unchanged before it is validated.
+     *
+     * @return the validation delay, in ms
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * Sets the executor on which the validator runs. If null (the default),
+     * the validator runs on the event dispatch thread.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @param executor the executor to validate on, or null
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Checks whether the text has changed since it was last validated, or a
+     * background validation is still running.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @return true if a result is still to come
+     */
+    public boolean isPending() {
+        return dirty || scheduled.get() || pending != null;
+    }
+
+    /**
+     * Runs any validation that is waiting for its delay to pass. Without an
+     * executor, the result has been delivered when this method returns.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     */
+    public void flush() {
+        if (dirty || scheduled.get())
+            validateNow();
+    }
+
+    /**
+     * Validates the current text immediately, canceling any validation
+     * already scheduled or running.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     */
+    public void validateNow() {
+
+        cancel();
+
+        final int count = generation;
+        final Callable<R> task;
+        if (document == null) {
+            // capture the input on the EDT
+            try {
+                task = snapshot.capture();
+            } catch (RuntimeException e) {
+                handler.validated(null, e);
+                return;
+            }
+            if (task == null) {
+                handler.validated(null, null);
+                return;
+            }
+
+            if (executor == null) {
+                R result = null;
+                Throwable error = null;
+                try {
+                    result = task.call();
+                } catch (Exception e) {
+                    error = e;
+                }
+                handler.validated(result, error);
+                return;
+            }
+        } else if (executor == null) {
+            // validate synchronously, reading the text without a copy
+            R result = null;
+            Throwable error = null;
+            try {
+                document.getText(0, document.getLength(), segment);
+                result = validator.validate(segment);
+            } catch (Exception e) {
+                error = e;
+            }
+            handler.validated(result, error);
+            return;
+        } else {
+            // validate a copy of the text in the background
+            final String text;
+            try {
+                text = document.getText(0, document.getLength());
+            } catch (BadLocationException e) {
+                handler.validated(null, e);
+                return;
+            }
+            task = new Callable<R>() {
+                @Override
+                public R call() throws Exception {
+                    return validator.validate(text);
+                }
+            };
+        }
+
+        // run the task in the background, posting the result back
+        pending = new FutureTask<R>(task) {
+            @Override
+            protected void done() {
+                if (isCancelled())
+                    return;
+
+                R value = null;
+                Throwable thrown = null;
+                try {
+                    value = get();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    thrown = e.getCause();
+                }
+
+                final R result = value;
+                final Throwable error = thrown;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(count, result, error);
+                    }
+                });
+            }
+        };
+        executor.execute(pending);
+    }
+
+    private void finish(int count, R result, Throwable error) {
+
+        if (count != generation) // stale result
+            return;
+
+        pending = null;
+        handler.validated(result, error);
+    }
+
+    // may be called from any thread that modifies the document
+    private void changed() {
+
+        // post at most one flush per burst of events
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    if (!scheduled.getAndSet(false))
+                        return; // already validated by flush
+                    schedule();
+                }
+            });
+        }
+    }
+
+    private void schedule() {
+
+        if (delay <= 0) {
+            validateNow();
+            return;
+        }
+
+        // wait for the text to settle
+        cancel();
+        dirty = true;
+        getTimer().restart();
+    }
+
+    private Timer getTimer() {
+
+        if (timer == null) {
+            timer = new Timer(delay, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    validateNow();
+                }
+            });
+            timer.setRepeats(false);
+        }
+
+        return timer;
+    }
+
+}
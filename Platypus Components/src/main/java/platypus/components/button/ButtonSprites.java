@@ -0,0 +1,255 @@
+package platypus.components.button;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.UIManager;
+
+import platypus.components.image.PIconRegistry;
+
+/**
+ * A set of pre-rendered images for every visual state of a button with a given
+ * size, color scheme and icon. Each state (idle, each fade step, pressed) is
+ * rendered once into a compatible image on first use, so painting a button is
+ * a single blit.
+ * <p>
+ * Sprite sets are shared between identical buttons through a bounded LRU
+ * cache, which is cleared when the look and feel changes. Components needing
+ * more sets than the cache holds, such as a {@link PButtonGrid}, can instead
+ * keep their own unshared sets. Sprites are rendered
+ * at the device scale they are requested for, so a change in screen scale
+ * simply selects a different set, with icons taken from the matching
+ * {@link PIconRegistry} variant.
+ *
+ * @author Jingchen Xu
+ */
+final class ButtonSprites {
+
+    private static final int MAX_CACHED_SETS = 128;
+
+    private static final Map<Key, ButtonSprites> CACHE = new LinkedHashMap<Key, ButtonSprites>(
+            16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ButtonSprites> eldest) {
+            if (size() > MAX_CACHED_SETS) {
+                eldest.getValue().valid = false;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    static {
+        // drop all sprites when the look and feel changes
+        UIManager.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("lookAndFeel".equals(evt.getPropertyName()))
+                    invalidateAll();
+            }
+        });
+    }
+
+    private final Key key;
+    private final GraphicsConfiguration gc;
+    private final BufferedImage[] sprites;
+    private volatile boolean valid = true;
+
+    private ButtonSprites(Key key, GraphicsConfiguration gc) {
+        this.key = key;
+        this.gc = gc;
+        sprites = new BufferedImage[key.ramp.getSteps() + 2];
+    }
+
+    /**
+     * Returns the shared sprite set for a button configuration.
+     *
+     * @param width button width
+     * @param height button height
+     * @param ramp the button's fade colors
+     * @param mouseDownColor the button color while pressed, or null
+     * @param icon the resource URL of the icon drawn over the button, or null
+     * @param iconX the horizontal offset of the icon from the button corner
+     * @param iconY the vertical offset of the icon from the button corner
+     * @param scale the device scale to render at
+     * @param gc the graphics configuration to create images for, or null
+     * @return the sprite set
+     */
+    static ButtonSprites get(int width, int height, ColorRamp ramp, Color mouseDownColor,
+            URL icon, int iconX, int iconY, double scale, GraphicsConfiguration gc) {
+
+        Key key = new Key(width, height, ramp, mouseDownColor, icon, iconX, iconY, scale);
+        synchronized (CACHE) {
+            ButtonSprites sprites = CACHE.get(key);
+            if (sprites == null) {
+                sprites = new ButtonSprites(key, gc);
+                CACHE.put(key, sprites);
+            }
+            return sprites;
+        }
+    }
+
+    /**
+     * Creates a sprite set which is not shared through the cache. It stays
+     * valid until discarded, so its owner must drop it when the look and feel
+     * changes.
+     *
+     * @param width button width
+     * @param height button height
+     * @param ramp the button's fade colors
+     * @param mouseDownColor the button color while pressed, or null
+     * @param icon the resource URL of the icon drawn over the button, or null
+     * @param iconX the horizontal offset of the icon from the button corner
+     * @param iconY the vertical offset of the icon from the button corner
+     * @param scale the device scale to render at
+     * @param gc the graphics configuration to create images for, or null
+     * @return the sprite set
+     */
+    static ButtonSprites create(int width, int height, ColorRamp ramp, Color mouseDownColor,
+            URL icon, int iconX, int iconY, double scale, GraphicsConfiguration gc) {
+        return new ButtonSprites(
+                new Key(width, height, ramp, mouseDownColor, icon, iconX, iconY, scale), gc);
+    }
+
+    /**
+     * Discards all cached sprite sets, forcing buttons to re-render.
+     */
+    static void invalidateAll() {
+        synchronized (CACHE) {
+            for (ButtonSprites sprites : CACHE.values())
+                sprites.valid = false;
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Checks whether this sprite set is still cached. Buttons should look up a
+     * new set once this returns false.
+     *
+     * @return true if the set is still valid
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Returns the index of the pressed state sprite.
+     *
+     * @return the pressed state index
+     */
+    int getPressedIndex() {
+        return sprites.length - 1;
+    }
+
+    /**
+     * Returns the sprite for a state, rendering it if necessary. Indices 0 to
+     * the ramp's step count are fade steps, and {@link #getPressedIndex()} is
+     * the pressed state.
+     *
+     * @param index the state index
+     * @return the rendered sprite
+     */
+    BufferedImage getSprite(int index) {
+
+        BufferedImage sprite = sprites[index];
+        if (sprite == null) {
+            Color fill = index == getPressedIndex() ? key.mouseDownColor
+                    : key.ramp.getColor(index);
+            sprite = sprites[index] = render(fill);
+        }
+
+        return sprite;
+    }
+
+    private BufferedImage render(Color fill) {
+
+        int w = (int) Math.ceil(key.width * key.scale);
+        int h = (int) Math.ceil(key.height * key.scale);
+        BufferedImage img = gc != null ? gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        Graphics2D g = img.createGraphics();
+        g.scale(key.scale, key.scale);
+
+        int arcWidth = (int) Math.sqrt(key.width);
+        int arcHeight = (int) Math.sqrt(key.height);
+
+        // button fill
+        g.setColor(fill);
+        g.fillRoundRect(0, 0, key.width - 1, key.height - 1, arcWidth, arcHeight);
+
+        // button outline
+        g.setColor(key.ramp.getOutline());
+        g.drawRoundRect(0, 0, key.width - 1, key.height - 1, arcWidth, arcHeight);
+
+        // button icon, using the variant with one pixel per device pixel
+        if (key.icon != null) {
+            BufferedImage icon = PIconRegistry.getImage(key.icon);
+            g.drawImage(PIconRegistry.getImage(key.icon, key.scale), key.iconX, key.iconY,
+                    icon.getWidth(), icon.getHeight(), null);
+        }
+
+        g.dispose();
+        return img;
+    }
+
+    private static final class Key {
+
+        private final int width, height;
+        private final ColorRamp ramp;
+        private final Color mouseDownColor;
+        private final URL icon;
+        private final String iconSpec; // compared instead of the URL
+        private final int iconX, iconY;
+        private final double scale;
+
+        private Key(int width, int height, ColorRamp ramp, Color mouseDownColor,
+                URL icon, int iconX, int iconY, double scale) {
+            this.width = width;
+            this.height = height;
+            this.ramp = ramp;
+            this.mouseDownColor = mouseDownColor == null ? ramp.getColor(ramp.getSteps())
+                    : mouseDownColor;
+            this.icon = icon;
+            this.iconSpec = icon == null ? null : icon.toExternalForm();
+            this.iconX = iconX;
+            this.iconY = iconY;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return width == k.width && height == k.height && ramp.equals(k.ramp)
+                    && mouseDownColor.getRGB() == k.mouseDownColor.getRGB()
+                    && (iconSpec == null ? k.iconSpec == null : iconSpec.equals(k.iconSpec))
+                    && iconX == k.iconX && iconY == k.iconY && scale == k.scale;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = width * 31 + height;
+            h = h * 31 + ramp.hashCode();
+            h = h * 31 + mouseDownColor.getRGB();
+            h = h * 31 + (iconSpec == null ? 0 : iconSpec.hashCode());
+            h = h * 31 + iconX;
+            h = h * 31 + iconY;
+            long bits = Double.doubleToLongBits(scale);
+            return h * 31 + (int) (bits ^ (bits >>> 32));
+        }
+    }
+
+}
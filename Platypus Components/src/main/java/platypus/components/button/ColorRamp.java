@@ -0,0 +1,163 @@
+package platypus.components.button;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, precomputed sequence of colors fading from an idle color to a
+ * mouse-over color in a fixed number of steps, along with the matching outline
+ * color. Ramps are interned, so buttons with the same colors and fade
+ * granularity usually share a single instance. The cache is cleared when it
+ * fills up, so equal ramps may still exist; ramps compare equal by their
+ * colors.
+ *
+ * @author Jingchen Xu
+ */
+final class ColorRamp {
+
+    private static final int MAX_CACHED_RAMPS = 256;
+    private static final ConcurrentHashMap<Key, ColorRamp> CACHE = new ConcurrentHashMap<Key, ColorRamp>();
+
+    private final Color[] colors;
+    private final Color outline;
+    private int hash;
+
+    private ColorRamp(Color idleColor, Color mouseOverColor, int steps) {
+
+        outline = idleColor.darker();
+
+        if (mouseOverColor == null || steps <= 0) {
+            colors = new Color[] { idleColor };
+            return;
+        }
+
+        colors = new Color[steps + 1];
+        colors[0] = idleColor;
+        for (int i = 1; i <= steps; i++) {
+            colors[i] = new Color(
+                    idleColor.getRed() + (mouseOverColor.getRed() - idleColor.getRed()) * i / steps,
+                    idleColor.getGreen() + (mouseOverColor.getGreen() - idleColor.getGreen()) * i / steps,
+                    idleColor.getBlue() + (mouseOverColor.getBlue() - idleColor.getBlue()) * i / steps);
+        }
+    }
+
+    /**
+     * Returns the shared ramp for the specified colors and fade granularity.
+     *
+     * @param idleColor the color at the start of the fade
+     * @param mouseOverColor the color at the end of the fade, or null for no
+     *            fade
+     * @param steps granularity of fade
+     * @return the color ramp
+     */
+    static ColorRamp get(Color idleColor, Color mouseOverColor, int steps) {
+
+        Key key = new Key(idleColor, mouseOverColor, steps);
+        ColorRamp ramp = CACHE.get(key);
+        if (ramp == null) {
+            // keep the cache bounded if colors are generated dynamically
+            if (CACHE.size() >= MAX_CACHED_RAMPS)
+                CACHE.clear();
+
+            ramp = new ColorRamp(idleColor, mouseOverColor, steps);
+            ColorRamp existing = CACHE.putIfAbsent(key, ramp);
+            if (existing != null)
+                ramp = existing;
+        }
+
+        return ramp;
+    }
+
+    /**
+     * Creates a ramp which is not shared through the cache, for components
+     * keeping their own sets of ramps.
+     *
+     * @param idleColor the color at the start of the fade
+     * @param mouseOverColor the color at the end of the fade, or null for no
+     *            fade
+     * @param steps granularity of fade
+     * @return the new color ramp
+     */
+    static ColorRamp create(Color idleColor, Color mouseOverColor, int steps) {
+        return new ColorRamp(idleColor, mouseOverColor, steps);
+    }
+
+    /**
+     * Returns the color at a fade step. Steps beyond the end of the ramp
+     * return the final color.
+     *
+     * @param step the fade step, where 0 is the idle color
+     * @return the color at that step
+     */
+    Color getColor(int step) {
+        return colors[step < colors.length ? step : colors.length - 1];
+    }
+
+    /**
+     * Returns the number of fade steps in the ramp.
+     *
+     * @return the number of steps, or 0 if the ramp does not fade
+     */
+    int getSteps() {
+        return colors.length - 1;
+    }
+
+    /**
+     * Returns the outline color, a darker version of the idle color.
+     *
+     * @return the outline color
+     */
+    Color getOutline() {
+        return outline;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof ColorRamp))
+            return false;
+        ColorRamp r = (ColorRamp) o;
+        return hashCode() == r.hashCode() && Arrays.equals(colors, r.colors);
+    }
+
+    @Override
+    public int hashCode() {
+        // the outline is derived from the first color, so it is not compared
+        int h = hash;
+        if (h == 0)
+            hash = h = Arrays.hashCode(colors);
+        return h;
+    }
+
+    private static final class Key {
+
+        private final int idleRGB;
+        private final int mouseOverRGB;
+        private final boolean fades;
+        private final int steps;
+
+        private Key(Color idleColor, Color mouseOverColor, int steps) {
+            this.idleRGB = idleColor.getRGB();
+            this.fades = mouseOverColor != null && steps > 0;
+            this.mouseOverRGB = fades ? mouseOverColor.getRGB() : 0;
+            this.steps = fades ? steps : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return idleRGB == k.idleRGB && mouseOverRGB == k.mouseOverRGB
+                    && fades == k.fades && steps == k.steps;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((idleRGB * 31 + mouseOverRGB) * 31 + steps) * 31 + (fades ? 1 : 0);
+        }
+    }
+
+}
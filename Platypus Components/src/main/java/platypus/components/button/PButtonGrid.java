@@ -0,0 +1,553 @@
+package platypus.components.button;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.HashMap;
+
+import javax.swing.JComponent;
+
+import platypus.components.PActionListenerList;
+import platypus.components.PAnimationClock;
+import platypus.components.image.PIconRegistry;
+
+/**
+ * A single component which renders a grid of color or image buttons described
+ * by a {@link PButtonGridModel}. Cells look and behave like
+ * {@link PColorButton}s and {@link PImageButton}s, including fades, pressed and
+ * toggled states, but are not components themselves: hit-testing is done by
+ * arithmetic, each cell keeps a single byte of state, and only cells whose
+ * state changes are repainted. This makes palettes and matrix selectors with
+ * thousands of cells practical.
+ * <p>
+ * Cells with the same colors and icon share one set of pre-rendered sprites.
+ * The grid keeps its own sprite sets rather than using the cache shared by
+ * buttons, so a palette with many distinct cells does not evict its own
+ * sprites on every repaint.
+ * <p>
+ * Clicking a cell toggles it and notifies listeners with an action command of
+ * the form {@code "row,column"}.
+ *
+ * @author Jingchen Xu
+ */
+public class PButtonGrid extends JComponent {
+
+    private static final long serialVersionUID = 4906257128426451702L;
+
+    // cell state flags
+    private static final byte TOGGLED = 1;
+
+    // appearance configuration fields
+    private PButtonGridModel model;
+    private Dimension cellSize;
+    private int gap;
+
+    // animation fields
+    private int fadeSteps = 1;
+    private long fadeInterval = 0;
+    private int fadeStep;
+    private long fadeStart;
+    private final PAnimationClock.Animation fade = new PAnimationClock.Animation() {
+        @Override
+        public boolean tick(long now) {
+            return tickFade(now);
+        }
+    };
+
+    // state fields
+    private byte[] cellStates;
+    private int hoverRow = -1, hoverColumn = -1;
+    private int pressedRow = -1, pressedColumn = -1;
+
+    // painting fields, reused across paints
+    private final Rectangle clip = new Rectangle();
+    private GraphicsConfiguration spriteConfig;
+    private double spriteScale;
+    private ButtonSprites lastSprites;
+    private Color lastIdle, lastOver, lastDown;
+    private String lastIcon;
+    private final HashMap<SpriteKey, ButtonSprites> spriteTable = new HashMap<SpriteKey, ButtonSprites>();
+    private final SpriteKey probe = new SpriteKey();
+    private final HashMap<String, URL> iconUrls = new HashMap<String, URL>();
+
+    // functionality fields
+    private final PActionListenerList listeners = new PActionListenerList();
+
+    /**
+     * Creates a button grid with no gap between cells and no fade animation.
+     *
+     * @param model the model describing the cells
+     * @param cellSize the size of each cell
+     */
+    public PButtonGrid(PButtonGridModel model, Dimension cellSize) {
+        this(model, cellSize, 0);
+    }
+
+    /**
+     * Creates a button grid with no fade animation.
+     *
+     * @param model the model describing the cells
+     * @param cellSize the size of each cell
+     * @param gap the space between adjacent cells, in pixels
+     */
+    public PButtonGrid(PButtonGridModel model, Dimension cellSize, int gap) {
+        super();
+
+        this.cellSize = new Dimension(cellSize);
+        this.gap = gap;
+        setModel(model);
+
+        setFocusable(true);
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                hover(rowAtPoint(e.getPoint()), columnAtPoint(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                hover(-1, -1);
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                pressedRow = rowAtPoint(e.getPoint());
+                pressedColumn = columnAtPoint(e.getPoint());
+                if (pressedRow < 0 || pressedColumn < 0)
+                    pressedRow = pressedColumn = -1;
+                repaintCell(pressedRow, pressedColumn);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+
+                int row = pressedRow, column = pressedColumn;
+                pressedRow = pressedColumn = -1;
+                if (row < 0)
+                    return;
+
+                // only click if released over the pressed cell
+                if (row == rowAtPoint(e.getPoint()) && column == columnAtPoint(e.getPoint())) {
+                    setToggled(row, column, !isToggled(row, column));
+
+                    PAnimationClock.stop(fade);
+                    fadeStep = fadeSteps; // bring fade to completion
+
+                    notifyListeners(e, row, column);
+                }
+                repaintCell(row, column);
+            }
+        };
+        addMouseListener(mouseAdapter);
+        addMouseMotionListener(mouseAdapter);
+    }
+
+    /**
+     * Sets the model describing the cells, resetting all cell state.
+     *
+     * @param model the new model
+     */
+    public void setModel(PButtonGridModel model) {
+
+        if (model == null)
+            throw new NullPointerException("model cannot be null");
+
+        this.model = model;
+        iconUrls.clear();
+        invalidateSprites();
+        cellStates = new byte[model.getRowCount() * model.getColumnCount()];
+        hoverRow = hoverColumn = pressedRow = pressedColumn = -1;
+        PAnimationClock.stop(fade);
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Returns the model describing the cells.
+     *
+     * @return the model
+     */
+    public PButtonGridModel getModel() {
+        return model;
+    }
+
+    /**
+     * Notifies the grid that the appearance of a cell in the model has
+     * changed, repainting only that cell.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     */
+    public void cellChanged(int row, int column) {
+        repaintCell(row, column);
+    }
+
+    /**
+     * Notifies the grid that the dimensions of the model have changed,
+     * resetting all cell state.
+     */
+    public void modelChanged() {
+        setModel(model);
+    }
+
+    /**
+     * Changes the fade behavior of the cells.
+     *
+     * @param steps granularity of fade
+     * @param interval total time for fade, in ms
+     */
+    public void setFadeBehavior(int steps, long interval) {
+        this.fadeSteps = steps;
+        this.fadeInterval = interval;
+        invalidateSprites();
+        repaint();
+    }
+
+    /**
+     * Returns whether a cell has been toggled. A cell's toggle state is flipped
+     * each time it is clicked.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @return the cell's toggle state
+     */
+    public boolean isToggled(int row, int column) {
+        return (cellStates[index(row, column)] & TOGGLED) != 0;
+    }
+
+    /**
+     * Sets the toggle state of a cell.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @param toggled the new toggled state
+     */
+    public void setToggled(int row, int column, boolean toggled) {
+
+        int i = index(row, column);
+        byte state = (byte) (toggled ? cellStates[i] | TOGGLED : cellStates[i] & ~TOGGLED);
+        if (state != cellStates[i]) {
+            cellStates[i] = state;
+            repaintCell(row, column);
+        }
+    }
+
+    /**
+     * Returns the row of the cell at a point.
+     *
+     * @param p a point in this component's coordinates
+     * @return the row, or -1 if the point is not over a cell
+     */
+    public int rowAtPoint(Point p) {
+        return cellAt(p.y, cellSize.height, model.getRowCount());
+    }
+
+    /**
+     * Returns the column of the cell at a point.
+     *
+     * @param p a point in this component's coordinates
+     * @return the column, or -1 if the point is not over a cell
+     */
+    public int columnAtPoint(Point p) {
+        return cellAt(p.x, cellSize.width, model.getColumnCount());
+    }
+
+    private int cellAt(int coord, int size, int count) {
+
+        if (coord < 0)
+            return -1;
+
+        int cell = coord / (size + gap);
+        if (cell >= count || coord - cell * (size + gap) >= size)
+            return -1; // outside grid or in a gap
+        return cell;
+    }
+
+    private int index(int row, int column) {
+
+        if (row < 0 || row >= model.getRowCount() || column < 0
+                || column >= model.getColumnCount())
+            throw new IndexOutOfBoundsException("no cell at " + row + "," + column);
+
+        return row * model.getColumnCount() + column;
+    }
+
+    private void hover(int row, int column) {
+
+        if (row < 0 || column < 0)
+            row = column = -1;
+        if (row == hoverRow && column == hoverColumn)
+            return;
+
+        // reset fade on the old cell
+        PAnimationClock.stop(fade);
+        repaintCell(hoverRow, hoverColumn);
+
+        hoverRow = row;
+        hoverColumn = column;
+        fadeStep = 0;
+        setCursor(Cursor.getPredefinedCursor(row < 0 ? Cursor.DEFAULT_CURSOR
+                : Cursor.HAND_CURSOR));
+
+        // start mouse-over animation on the new cell
+        if (row >= 0) {
+            repaintCell(row, column);
+            if (model.getMouseOverColor(row, column) != null) {
+                fadeStart = System.nanoTime();
+                PAnimationClock.start(fade);
+            }
+        }
+    }
+
+    private boolean tickFade(long now) {
+
+        if (hoverRow < 0)
+            return false;
+
+        // find the fade step reached in the elapsed time
+        long elapsed = now - fadeStart;
+        long interval = fadeInterval * 1000000L;
+        int step = interval <= 0 ? fadeSteps
+                : (int) Math.min(fadeSteps, elapsed * fadeSteps / interval);
+
+        if (step != fadeStep) {
+            fadeStep = step;
+            repaintCell(hoverRow, hoverColumn);
+        }
+
+        return step < fadeSteps;
+    }
+
+    private void repaintCell(int row, int column) {
+        if (row >= 0 && column >= 0)
+            repaint(column * (cellSize.width + gap), row * (cellSize.height + gap),
+                    cellSize.width, cellSize.height);
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        Graphics2D g2d = (Graphics2D) g;
+        GraphicsConfiguration gc = g2d.getDeviceConfiguration();
+        if (gc != spriteConfig) {
+            spriteConfig = gc;
+            spriteScale = gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+            invalidateSprites();
+        }
+
+        // only paint cells intersecting the clip
+        g.getClipBounds(clip);
+        int cellWidth = cellSize.width + gap;
+        int cellHeight = cellSize.height + gap;
+        int firstRow = Math.max(0, clip.y / cellHeight);
+        int lastRow = Math.min(model.getRowCount() - 1, (clip.y + clip.height) / cellHeight);
+        int firstColumn = Math.max(0, clip.x / cellWidth);
+        int lastColumn = Math.min(model.getColumnCount() - 1, (clip.x + clip.width) / cellWidth);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++)
+                paintCell(g, row, column, column * cellWidth, row * cellHeight);
+        }
+    }
+
+    private void paintCell(Graphics g, int row, int column, int x, int y) {
+
+        Color idle = model.getIdleColor(row, column);
+        Color over = model.getMouseOverColor(row, column);
+        Color down = model.getMouseDownColor(row, column);
+        String icon = model.getIconPath(row, column, isToggled(row, column));
+        ButtonSprites sprites = getSprites(idle, over, down, icon);
+
+        // pick the sprite for the current state
+        boolean pressed = row == pressedRow && column == pressedColumn;
+        int index;
+        if (pressed && down != null) {
+            index = sprites.getPressedIndex();
+        } else if (pressed && over != null) {
+            index = fadeSteps;
+        } else if (row == hoverRow && column == hoverColumn && over != null) {
+            index = fadeStep;
+        } else {
+            index = 0;
+        }
+
+        g.drawImage(sprites.getSprite(index), x, y, cellSize.width, cellSize.height, null);
+    }
+
+    private ButtonSprites getSprites(Color idle, Color over, Color down, String icon) {
+
+        // neighboring cells usually share a configuration, so reuse the last one
+        if (lastSprites != null && idle.equals(lastIdle)
+                && (over == null ? lastOver == null : over.equals(lastOver))
+                && (down == null ? lastDown == null : down.equals(lastDown))
+                && (icon == null ? lastIcon == null : icon.equals(lastIcon)))
+            return lastSprites;
+
+        probe.set(idle, over, down, icon);
+        ButtonSprites sprites = spriteTable.get(probe);
+        if (sprites == null && icon != null
+                && PIconRegistry.getImageIfLoaded(getIconUrl(icon), spriteScale) == null) {
+            // paint without the icon until it has loaded, rather than waiting
+            PIconRegistry.loadAsync(getIconUrl(icon), spriteScale).thenRun(new Runnable() {
+                @Override
+                public void run() {
+                    repaint();
+                }
+            });
+            return getSprites(idle, over, down, null);
+        }
+
+        lastSprites = sprites;
+        if (lastSprites == null) {
+            // more configurations than cells means cells have since changed
+            if (spriteTable.size() >= cellStates.length)
+                spriteTable.clear();
+
+            URL iconUrl = null;
+            int iconX = 0, iconY = 0;
+            if (icon != null) {
+                iconUrl = getIconUrl(icon);
+                BufferedImage image = PIconRegistry.getImage(iconUrl);
+                iconX = (cellSize.width - image.getWidth()) / 2;
+                iconY = (cellSize.height - image.getHeight()) / 2;
+            }
+
+            lastSprites = ButtonSprites.create(cellSize.width, cellSize.height,
+                    ColorRamp.create(idle, over, fadeSteps), down, iconUrl, iconX, iconY,
+                    spriteScale, spriteConfig);
+            spriteTable.put(new SpriteKey(probe), lastSprites);
+        }
+        lastIdle = idle;
+        lastOver = over;
+        lastDown = down;
+        lastIcon = icon;
+
+        return lastSprites;
+    }
+
+    private void invalidateSprites() {
+        lastSprites = null;
+        spriteTable.clear();
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+
+        // sprites are not shared, so drop them here on look and feel changes
+        if (spriteTable != null)
+            invalidateSprites();
+    }
+
+    private URL getIconUrl(String path) {
+
+        // resolve against the model, which belongs to the application
+        URL url = iconUrls.get(path);
+        if (url == null) {
+            url = PIconRegistry.getResource(model.getClass(), path);
+            iconUrls.put(path, url);
+        }
+        return url;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(
+                Math.max(0, model.getColumnCount() * (cellSize.width + gap) - gap),
+                Math.max(0, model.getRowCount() * (cellSize.height + gap) - gap));
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public Dimension getMaximumSize() {
+        return getPreferredSize();
+    }
+
+    /**
+     * Adds an {@code ActionListener} to the grid.
+     *
+     * @param listener the {@code ActionListener} to be added
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes an {@code ActionListener} from the grid.
+     *
+     * @param listener the {@code ActionListener} to be removed
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(MouseEvent e, int row, int column) {
+        if (!listeners.isEmpty())
+            listeners.fire(this, row + "," + column, e.getWhen(), e.getModifiers());
+    }
+
+    /**
+     * The colors and icon of a cell, identifying its sprite set.
+     */
+    private static final class SpriteKey {
+
+        private int idle, over, down;
+        private boolean hasOver, hasDown;
+        private String icon;
+
+        SpriteKey() {}
+
+        SpriteKey(SpriteKey k) {
+            idle = k.idle;
+            over = k.over;
+            down = k.down;
+            hasOver = k.hasOver;
+            hasDown = k.hasDown;
+            icon = k.icon;
+        }
+
+        void set(Color idleColor, Color overColor, Color downColor, String iconPath) {
+            idle = idleColor.getRGB();
+            hasOver = overColor != null;
+            over = hasOver ? overColor.getRGB() : 0;
+            hasDown = downColor != null;
+            down = hasDown ? downColor.getRGB() : 0;
+            icon = iconPath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SpriteKey))
+                return false;
+            SpriteKey k = (SpriteKey) o;
+            return idle == k.idle && over == k.over && down == k.down && hasOver == k.hasOver
+                    && hasDown == k.hasDown
+                    && (icon == null ? k.icon == null : icon.equals(k.icon));
+        }
+
+        @Override
+        public int hashCode() {
+            int h = (idle * 31 + over) * 31 + down;
+            h = h * 31 + (hasOver ? 1 : 0) + (hasDown ? 2 : 0);
+            return h * 31 + (icon == null ? 0 : icon.hashCode());
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package platypus.components.button;
+
+import java.awt.Color;
+
+/**
+ * The data model for a {@link PButtonGrid}. Describes the appearance of each
+ * cell in the grid; interaction state is kept by the grid itself.
+ *
+ * @author Jingchen Xu
+ */
+public interface PButtonGridModel {
+
+    /**
+     * Returns the number of rows in the grid.
+     *
+     * @return the row count
+     */
+    int getRowCount();
+
+    /**
+     * Returns the number of columns in the grid.
+     *
+     * @return the column count
+     */
+    int getColumnCount();
+
+    /**
+     * Returns the color of a cell when it is not being interacted with.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @return the idle color, which must be non-null
+     */
+    Color getIdleColor(int row, int column);
+
+    /**
+     * Returns the color a cell fades to when the pointer is over it.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @return the mouse-over color, or null for no fade
+     */
+    Color getMouseOverColor(int row, int column);
+
+    /**
+     * Returns the color of a cell while it is being clicked.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @return the mouse-down color, or null
+     */
+    Color getMouseDownColor(int row, int column);
+
+    /**
+     * Returns the resource path of the icon displayed on a cell. The path is
+     * resolved against the model's class, as by {@code Class.getResource}.
+     *
+     * @param row the cell row
+     * @param column the cell column
+     * @param toggled the toggle state of the cell
+     * @return the icon path, or null for a plain color cell
+     */
+    String getIconPath(int row, int column, boolean toggled);
+
+}
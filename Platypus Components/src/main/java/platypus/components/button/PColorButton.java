@@ -4,17 +4,26 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.event.ActionEvent;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
+import java.net.URL;
 
 import javax.swing.JComponent;
 
+import platypus.components.PActionListenerList;
+import platypus.components.PAnimationClock;
+import platypus.components.image.PIconRegistry;
+
 /**
  * A simple solid-color rounded-rectangular button which changes color on user
  * interaction. Colors and fade behavior can be specified.
+ * <p>
+ * Fades are driven by the shared {@link PAnimationClock}, so all animation and
+ * painting happens on the event dispatch thread. Each visual state is rendered
+ * once into a sprite shared by identical buttons, so painting is a single blit.
  * 
  * @author Jingchen Xu
  */
@@ -26,11 +35,23 @@ public class PColorButton extends JComponent {
     private Dimension size;
     private Color idleColor, mouseOverColor, mouseDownColor;
 
+    // precomputed painting fields
+    private ColorRamp ramp;
+    private ButtonSprites sprites;
+    private URL spriteIcon;
+    private GraphicsConfiguration spriteConfig;
+
     // animation fields
-    private int[] delta;
     private int fadeSteps;
     private long fadeInterval;
-    private Thread animThread;
+    private int fadeStep;
+    private long fadeStart;
+    private final PAnimationClock.Animation fade = new PAnimationClock.Animation() {
+        @Override
+        public boolean tick(long now) {
+            return tickFade(now);
+        }
+    };
 
     // state fields
     private boolean mouseEntered = false;
@@ -38,7 +59,7 @@ public class PColorButton extends JComponent {
     private boolean toggled = false;
 
     // functionality fields
-    private ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+    private final PActionListenerList listeners = new PActionListenerList();
     private String actionCommand;
 
     /**
@@ -91,12 +112,10 @@ public class PColorButton extends JComponent {
 
         super();
 
-        this.size = size;
-        setColors(idleColor, mouseOverColor, mouseDownColor);
+        setSize(size);
         fadeSteps = steps;
         fadeInterval = interval;
-        delta = new int[3];
-        resetDeltas();
+        setColors(idleColor, mouseOverColor, mouseDownColor);
 
         enableInputMethods(true);
         setFocusable(true);
@@ -105,27 +124,14 @@ public class PColorButton extends JComponent {
             @Override
             public void mouseEntered(MouseEvent e) {
                 mouseEntered = true;
-                setCursor(new Cursor(Cursor.HAND_CURSOR));
+                setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
                 repaint();
 
                 if (PColorButton.this.mouseOverColor != null) {
                     // start mouse-over animation
-                    animThread = new Thread() {
-
-                        @Override
-                        public void run() {
-                            for (int i = 1; i <= fadeSteps; i++) {
-                                try {
-                                    Thread.sleep(fadeInterval / fadeSteps);
-                                } catch (InterruptedException e) {
-                                    return; // stop the animation
-                                }
-                                PColorButton.this.calculateDeltas(i);
-                                PColorButton.this.repaint();
-                            }
-                        }
-                    };
-                    animThread.start();
+                    fadeStep = 0;
+                    fadeStart = System.nanoTime();
+                    PAnimationClock.start(fade);
                 }
             }
 
@@ -133,11 +139,10 @@ public class PColorButton extends JComponent {
             public void mouseExited(MouseEvent e) {
                 mouseEntered = false;
 
-                if (animThread != null) // stop animation if it exists
-                    animThread.interrupt();
-                resetDeltas(); // reset fade
+                PAnimationClock.stop(fade); // stop animation if it exists
+                fadeStep = 0; // reset fade
 
-                setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+                setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
                 repaint();
             }
 
@@ -152,9 +157,8 @@ public class PColorButton extends JComponent {
                 mousePressed = false;
                 toggled = !toggled; // toggle state
 
-                if (animThread != null) // stop animation if it exists
-                    animThread.interrupt();
-                calculateDeltas(fadeSteps); // bring fade to completion
+                PAnimationClock.stop(fade); // stop animation if it exists
+                fadeStep = fadeSteps; // bring fade to completion
 
                 notifyListeners(e);
                 repaint();
@@ -167,49 +171,91 @@ public class PColorButton extends JComponent {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        // calculate fill color
-        Color c;
+        ButtonSprites s = getSprites((Graphics2D) g);
+
+        // pick the sprite for the current state
+        int index;
         if (mousePressed && mouseDownColor != null) {
-            c = mouseDownColor;
+            index = s.getPressedIndex();
         } else if (mousePressed && mouseOverColor != null) {
-            c = mouseOverColor;
+            index = ramp.getSteps();
         } else if (mouseEntered) {
-            c = new Color(idleColor.getRed() + delta[0],
-                    idleColor.getGreen() + delta[1],
-                    idleColor.getBlue() + delta[2]);
+            index = Math.min(fadeStep, ramp.getSteps());
         } else {
-            c = idleColor;
+            index = 0;
         }
 
-        // button fill
-        g.setColor(c);
-        g.fillRoundRect(0, 0, size.width - 1, size.height - 1,
-                (int) Math.sqrt(size.width), (int) Math.sqrt(size.height));
+        g.drawImage(s.getSprite(index), 0, 0, size.width, size.height, null);
+    }
+
+    private ButtonSprites getSprites(Graphics2D g) {
+
+        // look up sprites again if configuration, icon or screen has changed
+        URL icon = getSpriteIcon();
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if (sprites == null || !sprites.isValid() || icon != spriteIcon || gc != spriteConfig) {
+            double scale = gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+
+            // paint without the icon until it has loaded, rather than waiting
+            if (icon != null && PIconRegistry.getImageIfLoaded(icon, scale) == null) {
+                PIconRegistry.loadAsync(icon, scale).thenRun(new Runnable() {
+                    @Override
+                    public void run() {
+                        repaint();
+                    }
+                });
+                icon = null;
+            }
 
-        // button outline
-        g.setColor(idleColor.darker());
-        g.drawRoundRect(0, 0, size.width - 1, size.height - 1,
-                (int) Math.sqrt(size.width), (int) Math.sqrt(size.height));
+            sprites = ButtonSprites.get(size.width, size.height, ramp, mouseDownColor,
+                    icon, getSpriteIconOffset(), getSpriteIconOffset(), scale, gc);
+            spriteIcon = icon;
+            spriteConfig = gc;
+        }
 
+        return sprites;
     }
 
-    private void calculateDeltas(int i) {
-        if (mouseOverColor != null) {
-            delta[0] = (mouseOverColor.getRed() - idleColor.getRed()) * i / fadeSteps;
-            delta[1] = (mouseOverColor.getGreen() - idleColor.getGreen()) * i / fadeSteps;
-            delta[2] = (mouseOverColor.getBlue() - idleColor.getBlue()) * i / fadeSteps;
-        }
+    /**
+     * Returns the resource URL of the icon to be rendered over the button in
+     * its current state. The icon is loaded through the
+     * {@link platypus.components.image.PIconRegistry PIconRegistry}.
+     *
+     * @return the icon URL, or null for no icon
+     */
+    URL getSpriteIcon() {
+        return null;
     }
 
-    private void resetDeltas() {
-        delta[0] = 0;
-        delta[1] = 0;
-        delta[2] = 0;
+    /**
+     * Returns the offset of the icon from the top-left corner of the button.
+     *
+     * @return the icon offset
+     */
+    int getSpriteIconOffset() {
+        return 0;
+    }
+
+    private boolean tickFade(long now) {
+
+        // find the fade step reached in the elapsed time
+        long elapsed = now - fadeStart;
+        long interval = fadeInterval * 1000000L;
+        int step = interval <= 0 ? fadeSteps
+                : (int) Math.min(fadeSteps, elapsed * fadeSteps / interval);
+
+        if (step != fadeStep) {
+            fadeStep = step;
+            repaint();
+        }
+
+        return step < fadeSteps;
     }
 
     @Override
     public void setSize(Dimension size) {
         this.size = size;
+        sprites = null;
     }
 
     @Override
@@ -241,6 +287,8 @@ public class PColorButton extends JComponent {
     public void setFadeBehavior(int steps, long interval) {
         this.fadeSteps = steps;
         this.fadeInterval = interval;
+        ramp = ColorRamp.get(idleColor, mouseOverColor, steps);
+        sprites = null;
     }
 
     /**
@@ -259,6 +307,8 @@ public class PColorButton extends JComponent {
         this.idleColor = idleColor;
         this.mouseOverColor = mouseOverColor;
         this.mouseDownColor = mouseDownColor;
+        ramp = ColorRamp.get(idleColor, mouseOverColor, fadeSteps);
+        sprites = null;
         repaint();
     }
 
@@ -309,19 +359,18 @@ public class PColorButton extends JComponent {
         listeners.add(listener);
     }
 
-    private void notifyListeners(MouseEvent e) {
-
-        // generate new event
-        ActionEvent evt = new ActionEvent(this, ActionEvent.ACTION_PERFORMED,
-                getActionCommand(), e.getWhen(), e.getModifiers());
+    /**
+     * Removes an {@code ActionListener} from the button.
+     * 
+     * @param listener the {@code ActionListener} to be removed
+     */
+    public final void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
 
-        // send it off to all the listeners
-        synchronized (listeners) {
-            for (int i = 0; i < listeners.size(); i++) {
-                ActionListener tmp = listeners.get(i);
-                tmp.actionPerformed(evt);
-            }
-        }
+    private void notifyListeners(MouseEvent e) {
+        if (!listeners.isEmpty())
+            listeners.fire(this, getActionCommand(), e.getWhen(), e.getModifiers());
     }
 
 }
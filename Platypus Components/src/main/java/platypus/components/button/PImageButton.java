@@ -1,17 +1,20 @@
 package platypus.components.button;
 
-import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.net.URL;
 
-import javax.swing.ImageIcon;
+import platypus.components.image.PIconRegistry;
 
 /**
  * A button which displays an icon over a single-color background. The icon can
  * be set to be static or toggled after each click.
  * <p>
  * When using the color-fade feature, it is recommended that icons with
- * transparent backgrounds are used.
+ * transparent backgrounds are used. The icon is rendered into the button's
+ * cached state sprites rather than drawn on every paint. Icons are loaded
+ * through the {@link PIconRegistry}, so buttons with the same icon share a
+ * single image.
  * 
  * @author Jingchen Xu
  */
@@ -19,13 +22,14 @@ public class PImageButton extends PColorButton {
 
     private static final long serialVersionUID = -6764200541346159986L;
 
-    private ImageIcon defaultIcon, toggledIcon;
+    private URL defaultIcon, toggledIcon;
     private int buffer;
 
     /**
      * Creates a button with a static icon and no buffer.
      * 
-     * @param iconPath the file path of the icon
+     * @param iconPath the resource path of the icon, resolved against this
+     *            button's class
      */
     public PImageButton(String iconPath) {
         this(iconPath, 0);
@@ -34,17 +38,20 @@ public class PImageButton extends PColorButton {
     /**
      * Creates a button with a static icon.
      * 
-     * @param iconPath the file path of the icon
+     * @param iconPath the resource path of the icon, resolved against this
+     *            button's class
      * @param buffer the size of the buffer around the icon
      */
     public PImageButton(String iconPath, int buffer) {
         super();
 
-        defaultIcon = new ImageIcon(getClass().getResource(iconPath));
+        // resolve like Class.getResource, relative to a subclass if any
+        defaultIcon = PIconRegistry.getResource(getClass(), iconPath);
         toggledIcon = null;
         this.buffer = buffer;
-        setSize(new Dimension(defaultIcon.getIconWidth() + 2 * buffer,
-                defaultIcon.getIconHeight() + 2 * buffer));
+
+        BufferedImage image = PIconRegistry.getImage(defaultIcon);
+        setSize(new Dimension(image.getWidth() + 2 * buffer, image.getHeight() + 2 * buffer));
     }
 
     /**
@@ -59,17 +66,22 @@ public class PImageButton extends PColorButton {
     public PImageButton(String iconPath1, String iconPath2, int buffer) {
         this(iconPath1, buffer);
 
-        toggledIcon = new ImageIcon(getClass().getResource(iconPath2));
+        toggledIcon = PIconRegistry.getResource(getClass(), iconPath2);
+        PIconRegistry.getImage(toggledIcon); // fail early if unreadable
     }
 
     @Override
-    public void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    URL getSpriteIcon() {
 
         if (isToggled() && toggledIcon != null)
-            g.drawImage(toggledIcon.getImage(), buffer, buffer, new Color(0, 0, 0, 0), null);
+            return toggledIcon;
         else
-            g.drawImage(defaultIcon.getImage(), buffer, buffer, new Color(0, 0, 0, 0), null);
+            return defaultIcon;
+    }
+
+    @Override
+    int getSpriteIconOffset() {
+        return buffer;
     }
 
 }
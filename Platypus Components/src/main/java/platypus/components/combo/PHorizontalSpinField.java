@@ -2,9 +2,7 @@ package platypus.components.combo;
 
 import java.awt.BorderLayout;
 import java.awt.Insets;
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -12,10 +10,18 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 
+import platypus.components.PActionListenerList;
+import platypus.components.PAutoRepeater;
+
 /**
  * A alternative spinner with its buttons placed to the left and right sides of
  * a text field displaying its current value. The value of the spinner can only
- * be modified using these buttons.
+ * be modified using these buttons. Holding a button down repeats it with
+ * increasing speed; the label and listeners are updated at most once per frame
+ * while repeating.
+ * <p>
+ * Values are supplied by a {@link PSpinValueProvider}, which computes labels
+ * on demand; a small cache keeps the most recently shown labels.
  *
  * @author Jingchen Xu
  */
@@ -23,11 +29,33 @@ public class PHorizontalSpinField extends JPanel {
 
     private static final long serialVersionUID = -2815629539622617414L;
 
-    private String[] values;
+    private static final int LABEL_CACHE_SIZE = 16; // must be a power of two
+
+    /** provider for numerical spinners, labeling each index with itself */
+    private static final PSpinValueProvider INTEGER_VALUES = new PSpinValueProvider() {
+        @Override
+        public int size() {
+            return UNBOUNDED;
+        }
+
+        @Override
+        public String getLabel(int index) {
+            return Integer.toString(index);
+        }
+    };
+
+    private final PSpinValueProvider values;
     private int currentIndex;
+    private int lastWraps;
+    private int minimumIndex = Integer.MIN_VALUE;
+    private int maximumIndex = Integer.MAX_VALUE;
+
+    // recently shown labels, indexed by the low bits of the value index
+    private final int[] cachedIndices = new int[LABEL_CACHE_SIZE];
+    private final String[] cachedLabels = new String[LABEL_CACHE_SIZE];
 
     private JLabel label;
-    private ArrayList<ActionListener> listeners;
+    private final PActionListenerList listeners = new PActionListenerList();
 
     /**
      * Creates a numerical spinner starting at 0.
@@ -43,7 +71,7 @@ public class PHorizontalSpinField extends JPanel {
      * @param initialValue initial value of the spinner
      */
     public PHorizontalSpinField(int initialValue) {
-        this(null);
+        this(INTEGER_VALUES);
 
         setIndex(initialValue);
     }
@@ -53,21 +81,54 @@ public class PHorizontalSpinField extends JPanel {
      * 
      * @param values the strings the spinner will cycle through
      */
-    public PHorizontalSpinField(String[] values) {
+    public PHorizontalSpinField(final String[] values) {
+        this(values == null ? INTEGER_VALUES : new PSpinValueProvider() {
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public String getLabel(int index) {
+                return values[index];
+            }
+        });
+    }
+
+    /**
+     * Creates a spinner whose values are computed on demand by a provider.
+     * Bounded providers cycle through their values; unbounded providers accept
+     * any index.
+     * <p>
+     * This is a factory rather than a constructor so that
+     * {@code new PHorizontalSpinField(null)} still selects the
+     * {@code String[]} constructor.
+     * 
+     * @param values the provider of the spinner's values
+     * @return the new spinner
+     */
+    public static PHorizontalSpinField create(PSpinValueProvider values) {
+
+        if (values == null)
+            throw new NullPointerException("values cannot be null");
+
+        return new PHorizontalSpinField(values);
+    }
+
+    private PHorizontalSpinField(PSpinValueProvider values) {
         super();
 
-        listeners = new ArrayList<ActionListener>();
         this.values = values;
         currentIndex = 0;
 
         setLayout(new BorderLayout());
 
         JButton decButton = new JButton("<");
-        decButton.addActionListener(new ActionListener() {
+        PAutoRepeater.install(decButton, new PAutoRepeater.StepHandler() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                decrement();
-                notifyListeners(e, "-");
+            public void step(int steps, long when, int modifiers) {
+                spin(-steps);
+                notifyListeners(when, modifiers, "-");
             }
         });
         decButton.setMargin(new Insets(0, 5, 0, 5));
@@ -79,11 +140,11 @@ public class PHorizontalSpinField extends JPanel {
         add(label, BorderLayout.CENTER);
 
         JButton incButton = new JButton(">");
-        incButton.addActionListener(new ActionListener() {
+        PAutoRepeater.install(incButton, new PAutoRepeater.StepHandler() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                increment();
-                notifyListeners(e, "+");
+            public void step(int steps, long when, int modifiers) {
+                spin(steps);
+                notifyListeners(when, modifiers, "+");
             }
         });
         incButton.setMargin(new Insets(0, 5, 0, 5));
@@ -108,38 +169,116 @@ public class PHorizontalSpinField extends JPanel {
      */
     public String getValue() {
 
-        if (values == null)
-            return Integer.toString(currentIndex);
-        else
-            return values[currentIndex];
+        // consult the cache before asking the provider
+        int slot = currentIndex & (LABEL_CACHE_SIZE - 1);
+        String cached = cachedLabels[slot];
+        if (cached != null && cachedIndices[slot] == currentIndex)
+            return cached;
+
+        String value = values.getLabel(currentIndex);
+        cachedIndices[slot] = currentIndex;
+        cachedLabels[slot] = value;
+        return value;
+    }
+
+    /**
+     * Returns the provider of the spinner's values.
+     * 
+     * @return the value provider
+     */
+    public PSpinValueProvider getValueProvider() {
+        return values;
     }
 
     /**
      * Increases the current index by one.
      */
     public void increment() {
-
-        if (values != null && currentIndex >= values.length - 1)
-            currentIndex = 0;
-        else
-            currentIndex++;
-
-        label.setText(getValue());
+        spin(1);
     }
 
     /**
      * Decreases the current index by one.
      */
     public void decrement() {
+        spin(-1);
+    }
+
+    /**
+     * Limits the index of an unbounded spinner, e.g. to the range of values
+     * its provider can label. Spinning stops at the limits rather than
+     * wrapping around. The current index is clamped into the new range.
+     * 
+     * @param minimum the lowest index
+     * @param maximum the highest index
+     * @throws IllegalArgumentException if the minimum is above the maximum
+     */
+    public void setIndexRange(int minimum, int maximum) {
+
+        if (minimum > maximum)
+            throw new IllegalArgumentException("minimum cannot be above maximum");
+
+        minimumIndex = minimum;
+        maximumIndex = maximum;
+        if (values.size() == PSpinValueProvider.UNBOUNDED
+                && (currentIndex < minimum || currentIndex > maximum))
+            setIndex(Math.max(minimum, Math.min(maximum, currentIndex)));
+    }
+
+    /**
+     * Returns the lowest index of an unbounded spinner.
+     * 
+     * @return the lowest index
+     */
+    public int getMinimumIndex() {
+        return minimumIndex;
+    }
+
+    /**
+     * Returns the highest index of an unbounded spinner.
+     * 
+     * @return the highest index
+     */
+    public int getMaximumIndex() {
+        return maximumIndex;
+    }
 
-        if (values != null && currentIndex <= 0)
-            currentIndex = values.length - 1;
-        else
-            currentIndex--;
+    /**
+     * Moves the current index by a number of steps, wrapping around the ends
+     * of a bounded spinner. An unbounded spinner stops at the limits of its
+     * {@link #setIndexRange(int, int) index range}. The label is updated once.
+     * 
+     * @param steps the number of steps, negative to move backwards
+     */
+    public void spin(int steps) {
+
+        // computed in long arithmetic, so the index cannot overflow
+        long target = (long) currentIndex + steps;
+        int size = values.size();
+        if (size != PSpinValueProvider.UNBOUNDED) {
+            lastWraps = (int) Math.max(Integer.MIN_VALUE,
+                    Math.min(Integer.MAX_VALUE, Math.floorDiv(target, size)));
+            currentIndex = (int) Math.floorMod(target, size);
+        } else {
+            lastWraps = 0;
+            currentIndex = (int) Math.max(minimumIndex, Math.min(maximumIndex, target));
+        }
 
         label.setText(getValue());
     }
 
+    /**
+     * Returns the number of times a bounded spinner wrapped around during its
+     * most recent change: positive when moving past the last value, negative
+     * when moving past the first. Listeners can use this to carry over into
+     * another spinner.
+     * 
+     * @return the number of wrap-arounds in the last change
+     */
+    public int getLastWraps() {
+        return lastWraps;
+    }
+
     /**
      * Sets the current index.
      * 
@@ -147,10 +286,13 @@ public class PHorizontalSpinField extends JPanel {
      */
     public void setIndex(int i) {
 
-        if (values != null && (i < 0 || i >= values.length))
+        int size = values.size();
+        if (size != PSpinValueProvider.UNBOUNDED ? i < 0 || i >= size
+                : i < minimumIndex || i > maximumIndex)
             throw new IllegalArgumentException("Index out of bounds");
 
         currentIndex = i;
+        lastWraps = 0;
         label.setText(getValue());
     }
 
@@ -172,17 +314,8 @@ public class PHorizontalSpinField extends JPanel {
         listeners.remove(l);
     }
 
-    private void notifyListeners(ActionEvent e, String command) {
-
-        ActionEvent evt = new ActionEvent(this, ActionEvent.ACTION_PERFORMED,
-                command, e.getWhen(), e.getModifiers());
-
-        synchronized (listeners) {
-            for (int i = 0; i < listeners.size(); i++) {
-                ActionListener tmp = listeners.get(i);
-                tmp.actionPerformed(evt);
-            }
-        }
+    private void notifyListeners(long when, int modifiers, String command) {
+        listeners.fire(this, command, when, modifiers);
     }
 
 }
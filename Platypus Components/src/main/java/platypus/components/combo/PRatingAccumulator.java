@@ -0,0 +1,142 @@
+package platypus.components.combo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe tally of votes on a star rating scale. Each rating has its own
+ * {@code LongAdder}, so any number of producer threads can vote at high rates
+ * without contention, while readers such as a bound {@link PRatingBox} sample
+ * the totals whenever they need them.
+ * <p>
+ * Reads are not atomic snapshots: while votes are arriving, a sample may
+ * include some concurrent votes and not others.
+ *
+ * @author Jingchen Xu
+ */
+public class PRatingAccumulator {
+
+    private final LongAdder[] counts;
+
+    /**
+     * Creates an accumulator for ratings from 1 to a number of stars.
+     *
+     * @param n the number of stars
+     */
+    public PRatingAccumulator(int n) {
+
+        if (n <= 0)
+            throw new IllegalArgumentException("Star count must be positive: " + n);
+
+        counts = new LongAdder[n];
+        for (int i = 0; i < n; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Returns the number of stars on the rating scale.
+     *
+     * @return the star count
+     */
+    public int getStarCount() {
+        return counts.length;
+    }
+
+    /**
+     * Records a single vote.
+     *
+     * @param rating the rating voted for, from 1 to the star count
+     */
+    public void vote(int rating) {
+        counts[checkRating(rating) - 1].increment();
+    }
+
+    /**
+     * Records a number of votes for the same rating.
+     *
+     * @param rating the rating voted for, from 1 to the star count
+     * @param votes the number of votes
+     */
+    public void vote(int rating, long votes) {
+        counts[checkRating(rating) - 1].add(votes);
+    }
+
+    /**
+     * Returns the number of votes for a rating.
+     *
+     * @param rating the rating, from 1 to the star count
+     * @return the vote count
+     */
+    public long getCount(int rating) {
+        return counts[checkRating(rating) - 1].sum();
+    }
+
+    /**
+     * Returns the total number of votes.
+     *
+     * @return the vote count
+     */
+    public long getTotal() {
+
+        long total = 0;
+        for (LongAdder count : counts)
+            total += count.sum();
+        return total;
+    }
+
+    /**
+     * Returns the average rating.
+     *
+     * @return the average rating, or 0 if there are no votes
+     */
+    public double getAverage() {
+
+        long total = 0, weighted = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long count = counts[i].sum();
+            total += count;
+            weighted += count * (i + 1);
+        }
+
+        return total == 0 ? 0 : (double) weighted / total;
+    }
+
+    /**
+     * Returns the number of votes for every rating.
+     *
+     * @return the vote counts, where index 0 holds the count for a rating of 1
+     */
+    public long[] getDistribution() {
+        return getDistribution(new long[counts.length]);
+    }
+
+    /**
+     * Copies the number of votes for every rating into an array, so frequent
+     * samplers can reuse the same array.
+     *
+     * @param dest an array at least as long as the star count
+     * @return {@code dest}, where index 0 holds the count for a rating of 1
+     */
+    public long[] getDistribution(long[] dest) {
+
+        for (int i = 0; i < counts.length; i++)
+            dest[i] = counts[i].sum();
+        return dest;
+    }
+
+    /**
+     * Clears all votes. Votes arriving concurrently may or may not be kept.
+     */
+    public void reset() {
+
+        for (LongAdder count : counts)
+            count.reset();
+    }
+
+    private int checkRating(int rating) {
+
+        if (rating < 1 || rating > counts.length)
+            throw new IllegalArgumentException("Rating out of range: " + rating);
+        return rating;
+    }
+
+}
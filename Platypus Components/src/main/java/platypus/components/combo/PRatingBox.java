@@ -1,33 +1,36 @@
 package platypus.components.combo;
 
-import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.Point;
-import java.awt.RenderingHints;
-import java.awt.Window;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
-import sl.shapes.RoundPolygon;
-import sl.shapes.StarPolygon;
+import platypus.components.PActionListenerList;
 
 /**
  * A rating GUI using stars to represent score. String labels can be
  * assigned to individual scores.
+ * <p>
+ * A rating box can also be bound to a {@link PRatingAccumulator}, in which
+ * case it stops accepting input and displays the average of the accumulated
+ * votes with fractional stars. The accumulator is sampled at a fixed refresh
+ * rate, however quickly votes arrive.
  * 
  * @author Jingchen Xu
  */
@@ -35,11 +38,20 @@ public class PRatingBox extends JPanel {
 
     private static final long serialVersionUID = -5761248500062226827L;
 
+    /** default interval between samples of a bound accumulator, in milliseconds */
+    public static final int DEFAULT_REFRESH_INTERVAL = 100;
+
     private int value = -1;
+    private int shownIndex = -1;
     private Star[] stars;
 
     private String[] strings;
-    private JLabel label;
+    private RatingLabel label;
+
+    // aggregate fields
+    private PRatingAccumulator accumulator;
+    private Timer refreshTimer;
+    private long[] sampled, shown;
 
     /**
      * Creates a rating box with blank labels.
@@ -64,7 +76,7 @@ public class PRatingBox extends JPanel {
         }
 
         // add the score string label
-        label = new JLabel("");
+        label = new RatingLabel();
         GridBagConstraints c = new GridBagConstraints(0, 1, n, 1, 0, 0,
                 GridBagConstraints.CENTER, GridBagConstraints.NONE,
                 new Insets(0, 0, 0, 0), 0, 0);
@@ -94,6 +106,17 @@ public class PRatingBox extends JPanel {
             star.addActionListener(listener);
     }
 
+    /**
+     * Removes an <code>ActionListener</code> from the rating box.
+     * 
+     * @param listener the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener listener) {
+
+        for (Star star : stars)
+            star.removeActionListener(listener);
+    }
+
     /**
      * Changes the size of the stars.
      * 
@@ -103,7 +126,8 @@ public class PRatingBox extends JPanel {
 
         for (Star star : stars)
             star.setRadius(radius);
-        ((Window) SwingUtilities.getRoot(this)).pack();
+        revalidate();
+        repaint();
     }
 
     /**
@@ -115,6 +139,156 @@ public class PRatingBox extends JPanel {
         return value + 1;
     }
 
+    /**
+     * Binds the rating box to an accumulator. Until it is unbound, the box
+     * ignores input and displays the average vote, refreshed at a fixed rate
+     * while the box is displayable.
+     * 
+     * @param accumulator the accumulator to display, with the same number of
+     *            stars as this box
+     */
+    public void bind(PRatingAccumulator accumulator) {
+
+        if (accumulator.getStarCount() != stars.length)
+            throw new IllegalArgumentException("Accumulator has "
+                    + accumulator.getStarCount() + " stars, expected " + stars.length);
+
+        this.accumulator = accumulator;
+        sampled = new long[stars.length];
+        shown = null;
+
+        setCursor(null);
+        for (Star star : stars)
+            star.setCursor(null);
+
+        sample();
+        if (isDisplayable())
+            getRefreshTimer().start();
+    }
+
+    /**
+     * Unbinds the rating box from its accumulator, if any, and restores the
+     * display of its own rating.
+     */
+    public void unbind() {
+
+        if (accumulator == null)
+            return;
+
+        accumulator = null;
+        sampled = shown = null;
+        if (refreshTimer != null)
+            refreshTimer.stop();
+
+        for (Star star : stars) {
+            star.setFill(-1);
+            star.setToolTipText(null);
+            star.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        }
+        updateLabel(shownIndex);
+    }
+
+    /**
+     * Returns the accumulator the rating box is bound to.
+     * 
+     * @return the bound accumulator, or null if the box shows its own rating
+     */
+    public PRatingAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    /**
+     * Returns whether the rating box is bound to an accumulator.
+     * 
+     * @return true if the box displays aggregate votes
+     */
+    public boolean isBound() {
+        return accumulator != null;
+    }
+
+    /**
+     * Sets how often a bound accumulator is sampled.
+     * 
+     * @param interval the refresh interval, in milliseconds
+     */
+    public void setRefreshInterval(int interval) {
+        getRefreshTimer().setDelay(interval);
+    }
+
+    /**
+     * Returns how often a bound accumulator is sampled.
+     * 
+     * @return the refresh interval, in milliseconds
+     */
+    public int getRefreshInterval() {
+        return refreshTimer == null ? DEFAULT_REFRESH_INTERVAL : refreshTimer.getDelay();
+    }
+
+    private Timer getRefreshTimer() {
+
+        if (refreshTimer == null) {
+            refreshTimer = new Timer(DEFAULT_REFRESH_INTERVAL, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    sample();
+                }
+            });
+        }
+
+        return refreshTimer;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        if (accumulator != null) {
+            sample();
+            getRefreshTimer().start();
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+
+        // do not keep sampling, or keep the box reachable, while hidden
+        if (refreshTimer != null)
+            refreshTimer.stop();
+
+        super.removeNotify();
+    }
+
+    /**
+     * Reads the bound accumulator and updates the display if any count has
+     * changed since the last sample.
+     */
+    private void sample() {
+
+        accumulator.getDistribution(sampled);
+        if (shown != null && Arrays.equals(sampled, shown))
+            return;
+
+        // swap buffers, so no arrays are allocated per sample
+        long[] counts = sampled;
+        sampled = shown != null ? shown : new long[counts.length];
+        shown = counts;
+
+        long total = 0, weighted = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            weighted += counts[i] * (i + 1);
+        }
+        double average = total == 0 ? 0 : (double) weighted / total;
+
+        for (int i = 0; i < stars.length; i++) {
+            stars[i].setFill(Math.max(0, Math.min(1, average - i)));
+            stars[i].setToolTipText(counts[i] + (counts[i] == 1 ? " vote" : " votes"));
+        }
+
+        label.setText(total == 0 ? "No votes"
+                : String.format("%.2f (%d %s)", average, total, total == 1 ? "vote" : "votes"));
+    }
+
     /**
      * Changes both the GUI and internal value to reflect index change. Called
      * on click.
@@ -123,6 +297,9 @@ public class PRatingBox extends JPanel {
      */
     public void clickStar(int index) {
 
+        if (accumulator != null)
+            return;
+
         if (value != index) {
             hoverStar(index);
             value = index;
@@ -139,15 +316,25 @@ public class PRatingBox extends JPanel {
      */
     public void hoverStar(int index) {
 
-        for (int i = 0; i < stars.length; i++)
-            stars[i].setSelected(stars[i].getIndex() <= index);
+        if (index == shownIndex || accumulator != null)
+            return;
+
+        // only the stars between the old and new index change state
+        int from = Math.max(Math.min(index, shownIndex) + 1, 0);
+        int to = Math.min(Math.max(index, shownIndex), stars.length - 1);
+        for (int i = from; i <= to; i++)
+            stars[i].setSelected(i <= index);
+        shownIndex = index;
+
+        updateLabel(index);
+    }
+
+    private void updateLabel(int index) {
 
         if (index >= 0 && strings != null && strings[index] != null)
             label.setText(strings[index]);
         else
             label.setText("");
-
-        repaint();
     }
 
     /**
@@ -159,6 +346,46 @@ public class PRatingBox extends JPanel {
     }
 }
 
+/**
+ * A label which only requests a new layout when its text changes size. Rating
+ * names are usually of similar length, so hovering between stars can often
+ * be handled by a repaint alone.
+ */
+class RatingLabel extends JLabel {
+
+    private static final long serialVersionUID = 2786124506914183962L;
+
+    private boolean sameSize = false;
+
+    public RatingLabel() {
+        super("");
+    }
+
+    @Override
+    public void setText(String text) {
+
+        String oldText = getText();
+        if (oldText != null && text != null && getFont() != null
+                && oldText.isEmpty() == text.isEmpty()) {
+            FontMetrics fm = getFontMetrics(getFont());
+            sameSize = SwingUtilities.computeStringWidth(fm, oldText)
+                    == SwingUtilities.computeStringWidth(fm, text);
+        }
+
+        try {
+            super.setText(text);
+        } finally {
+            sameSize = false;
+        }
+    }
+
+    @Override
+    public void revalidate() {
+        if (!sameSize)
+            super.revalidate();
+    }
+}
+
 /**
  * A single star for the <code>PRatingBox</code> UI.
  */
@@ -169,14 +396,17 @@ class Star extends JComponent {
     private final PRatingBox container;
     private final int index;
 
-    private RoundPolygon shape;
+    private StarSprites sprites;
     private Dimension size;
+    private GraphicsConfiguration spriteConfig;
+    private double spriteScale;
 
     private boolean isSelected;
+    private double fill = -1;
     private boolean mouseEntered = false;
     private boolean mousePressed = false;
 
-    private ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+    private final PActionListenerList listeners = new PActionListenerList();
 
     /**
      * Creates a star for a rating box.
@@ -193,14 +423,16 @@ class Star extends JComponent {
         this.container = container;
 
         setFocusable(true);
+        setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
 
         // enableInputMethods(true);
         addMouseListener(new MouseAdapter() {
 
             @Override
             public void mouseEntered(MouseEvent e) {
+                if (Star.this.container.isBound())
+                    return;
                 mouseEntered = true;
-                setCursor(new Cursor(Cursor.HAND_CURSOR));
                 Star.this.container.hoverStar(getIndex());
                 repaint();
             }
@@ -208,23 +440,26 @@ class Star extends JComponent {
             @Override
             public void mouseExited(MouseEvent e) {
                 mouseEntered = false;
-                setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
                 Star.this.container.hoverStar();
                 repaint();
             }
 
             @Override
             public void mousePressed(MouseEvent e) {
+                if (Star.this.container.isBound())
+                    return;
                 mousePressed = true;
                 repaint();
             }
 
             @Override
             public void mouseReleased(MouseEvent e) {
+                if (Star.this.container.isBound())
+                    return;
                 mousePressed = false;
                 Star.this.container.clickStar(getIndex());
                 notifyListeners(e);
-                Star.this.container.repaint();
+                repaint();
             }
 
         });
@@ -234,23 +469,38 @@ class Star extends JComponent {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
+        // recompute the device scale only when the screen changes
+        GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+        if (gc != spriteConfig) {
+            spriteConfig = gc;
+            spriteScale = gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+        }
 
-        // paint fill
-        g2d.setColor(isSelected() ? Color.GRAY : Color.WHITE);
-        g2d.fill(shape);
+        int outline = mousePressed ? StarSprites.PRESSED
+                : mouseEntered ? StarSprites.HOVER : StarSprites.NORMAL;
 
-        // paint outline
-        if (mousePressed)
-            g2d.setColor(Color.YELLOW);
-        else if (mouseEntered)
-            g2d.setColor(Color.LIGHT_GRAY);
-        else
-            g2d.setColor(Color.BLACK);
-        g2d.draw(shape);
+        if (fill < 0) {
+            int state = isSelected() ? StarSprites.FILLED : StarSprites.EMPTY;
+            g.drawImage(sprites.getSprite(state, outline, spriteScale, spriteConfig), 0, 0,
+                    size.width, size.height, null);
+            return;
+        }
 
+        // partial fill: the filled sprite clipped over the empty one
+        g.drawImage(sprites.getSprite(StarSprites.EMPTY, outline, spriteScale, spriteConfig),
+                0, 0, size.width, size.height, null);
+        int filledWidth = getFilledWidth(fill);
+        if (filledWidth > 0) {
+            Graphics clipped = g.create();
+            clipped.clipRect(0, 0, filledWidth, size.height);
+            clipped.drawImage(sprites.getSprite(StarSprites.FILLED, outline, spriteScale,
+                    spriteConfig), 0, 0, size.width, size.height, null);
+            clipped.dispose();
+        }
+    }
+
+    private int getFilledWidth(double fraction) {
+        return (int) Math.round(fraction * size.width);
     }
 
     /**
@@ -280,15 +530,17 @@ class Star extends JComponent {
         listeners.add(listener);
     }
 
-    private void notifyListeners(MouseEvent e) {
-
-        ActionEvent evt = new ActionEvent(this, ActionEvent.ACTION_PERFORMED,
-                new String(), e.getWhen(), e.getModifiers());
+    /**
+     * Removes an action listener from this component.
+     * 
+     * @param listener the listener to remove
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
 
-        synchronized (listeners) {
-            for (int i = 0; i < listeners.size(); i++)
-                listeners.get(i).actionPerformed(evt);
-        }
+    private void notifyListeners(MouseEvent e) {
+        listeners.fire(this, "", e.getWhen(), e.getModifiers());
     }
 
     /**
@@ -299,9 +551,9 @@ class Star extends JComponent {
     public void setRadius(int radius) {
 
         size = new Dimension(2 * radius, 2 * radius);
-        shape = new RoundPolygon(new StarPolygon(radius,
-                radius, radius, radius / 2, 5, Math.PI * 3 / 2), 2);
+        sprites = StarSprites.get(radius);
 
+        revalidate();
         repaint();
     }
 
@@ -335,11 +587,33 @@ class Star extends JComponent {
      * @param selected the new selection state
      */
     public void setSelected(boolean selected) {
-        this.isSelected = selected;
+
+        if (isSelected != selected) {
+            isSelected = selected;
+            repaint();
+        }
+    }
+
+    /**
+     * Sets a fractional fill which overrides the selection state, as used to
+     * display averages.
+     * 
+     * @param fraction the filled fraction from 0 to 1, or a negative value to
+     *            display the selection state
+     */
+    public void setFill(double fraction) {
+
+        double old = fill;
+        fill = fraction;
+
+        // repaint only if the visible fill changes
+        if ((old < 0) != (fraction < 0)
+                || (fraction >= 0 && getFilledWidth(old) != getFilledWidth(fraction)))
+            repaint();
     }
 
     @Override
-    public boolean contains(Point p) {
-        return shape.contains(p);
+    public boolean contains(int x, int y) {
+        return sprites.contains(x, y);
     }
 }
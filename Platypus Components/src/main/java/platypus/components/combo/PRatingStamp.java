@@ -0,0 +1,162 @@
+package platypus.components.combo;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+
+/**
+ * A lightweight, non-interactive painter for a row of rating stars, using the
+ * same visuals as {@link PRatingBox}. A single stamp can be reconfigured and
+ * painted repeatedly, e.g. as a cell renderer, with the star under a point
+ * found by arithmetic rather than by per-star components.
+ *
+ * @author Jingchen Xu
+ */
+public class PRatingStamp extends JComponent {
+
+    private static final long serialVersionUID = 3093325829174420567L;
+
+    private final int count;
+    private StarSprites sprites;
+    private Dimension size;
+
+    // state fields
+    private int value = 0;
+    private int hoverStar = -1;
+    private boolean pressed = false;
+
+    // painting fields
+    private GraphicsConfiguration spriteConfig;
+    private double spriteScale;
+
+    /**
+     * Creates a rating stamp.
+     *
+     * @param n the number of stars
+     * @param starRadius the size of the stars
+     */
+    public PRatingStamp(int n, int starRadius) {
+        super();
+
+        count = n;
+        setRadius(starRadius);
+    }
+
+    /**
+     * Changes the size of the stars.
+     *
+     * @param radius the new size of the stars
+     */
+    public void setRadius(int radius) {
+        sprites = StarSprites.get(radius);
+        size = new Dimension(2 * radius * count, 2 * radius);
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Returns the number of stars.
+     *
+     * @return the star count
+     */
+    public int getStarCount() {
+        return count;
+    }
+
+    /**
+     * Sets the displayed rating.
+     *
+     * @param value the rating, from 0 (no stars) to the star count
+     */
+    public void setValue(int value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the displayed rating.
+     *
+     * @return the rating
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the star the pointer is over. While a star is hovered, the stars up
+     * to it are displayed as selected in place of the rating.
+     *
+     * @param index the index of the hovered star, or -1 for none
+     * @param pressed whether the mouse is pressed on the hovered star
+     */
+    public void setHover(int index, boolean pressed) {
+        this.hoverStar = index;
+        this.pressed = pressed;
+    }
+
+    /**
+     * Returns the index of the star at a horizontal position, with the stars
+     * centered in a given width the same way they are painted.
+     *
+     * @param x the horizontal position
+     * @param width the width the stars are painted in
+     * @return the star index, or -1 if the position is not over a star
+     */
+    public int starAt(int x, int width) {
+
+        int starWidth = 2 * sprites.getRadius();
+        int offset = x - (width - starWidth * count) / 2;
+        if (offset < 0 || starWidth == 0)
+            return -1;
+
+        int index = offset / starWidth;
+        return index < count ? index : -1;
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+        }
+
+        // recompute the device scale only when the screen changes
+        GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+        if (gc != spriteConfig) {
+            spriteConfig = gc;
+            spriteScale = gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+        }
+
+        // center the stars in the available space
+        int starSize = 2 * sprites.getRadius();
+        int x = (getWidth() - starSize * count) / 2;
+        int y = (getHeight() - starSize) / 2;
+
+        for (int i = 0; i < count; i++) {
+            boolean selected = hoverStar >= 0 ? i <= hoverStar : i < value;
+            int outline = i != hoverStar ? StarSprites.NORMAL
+                    : pressed ? StarSprites.PRESSED : StarSprites.HOVER;
+
+            BufferedImage sprite = sprites.getSprite(
+                    selected ? StarSprites.FILLED : StarSprites.EMPTY, outline,
+                    spriteScale, spriteConfig);
+            g.drawImage(sprite, x + i * starSize, y, starSize, starSize, null);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return size;
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        return getPreferredSize();
+    }
+
+}
@@ -0,0 +1,32 @@
+package platypus.components.combo;
+
+/**
+ * Supplies the values displayed by a {@link PHorizontalSpinField}. Labels are
+ * computed on demand from an index, so a spinner can cover a huge or infinite
+ * domain without materializing it.
+ *
+ * @author Jingchen Xu
+ */
+public interface PSpinValueProvider {
+
+    /** size of a provider whose indices are not bounded */
+    int UNBOUNDED = -1;
+
+    /**
+     * Returns the number of values. A bounded spinner wraps around from its
+     * last index to 0 and vice versa; an unbounded spinner accepts any index.
+     *
+     * @return the number of values, or {@link #UNBOUNDED}
+     */
+    int size();
+
+    /**
+     * Returns the label for a value. Labels should depend only on the index,
+     * since spinners cache recently shown labels.
+     *
+     * @param index the index of the value
+     * @return the label to display
+     */
+    String getLabel(int index);
+
+}
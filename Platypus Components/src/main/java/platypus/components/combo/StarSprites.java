@@ -0,0 +1,165 @@
+package platypus.components.combo;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import sl.shapes.RoundPolygon;
+import sl.shapes.StarPolygon;
+
+/**
+ * Shared geometry and pre-rendered images for rating stars of one radius. The
+ * star shape is built once per radius, each visual state is rendered once per
+ * device scale with antialiasing, and hit-testing uses a precomputed pixel
+ * mask, so painting a star is a single blit.
+ *
+ * @author Jingchen Xu
+ */
+final class StarSprites {
+
+    /** fill states */
+    static final int EMPTY = 0, FILLED = 1;
+
+    /** outline states */
+    static final int NORMAL = 0, HOVER = 1, PRESSED = 2;
+
+    private static final Color[] FILL_COLORS = { Color.WHITE, Color.GRAY };
+    private static final Color[] OUTLINE_COLORS = { Color.BLACK, Color.LIGHT_GRAY, Color.YELLOW };
+
+    private static final ConcurrentHashMap<Integer, StarSprites> CACHE = new ConcurrentHashMap<Integer, StarSprites>();
+
+    private final int radius;
+    private final int size;
+    private final Shape shape;
+    private final long[] mask;
+    private final Map<Double, BufferedImage[]> sprites = new HashMap<Double, BufferedImage[]>();
+    private double lastScale;
+    private BufferedImage[] lastSprites;
+
+    private StarSprites(int radius) {
+
+        this.radius = radius;
+        size = 2 * radius;
+        shape = new RoundPolygon(new StarPolygon(radius,
+                radius, radius, radius / 2, 5, Math.PI * 3 / 2), 2);
+
+        // precompute which pixels are inside the star
+        mask = new long[(size * size + 63) / 64];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (shape.contains(x, y)) {
+                    int bit = y * size + x;
+                    mask[bit >> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the shared star data for a radius.
+     *
+     * @param radius the radius of the star, in pixels
+     * @return the star data
+     */
+    static StarSprites get(int radius) {
+
+        StarSprites star = CACHE.get(radius);
+        if (star == null) {
+            star = new StarSprites(radius);
+            StarSprites existing = CACHE.putIfAbsent(radius, star);
+            if (existing != null)
+                star = existing;
+        }
+
+        return star;
+    }
+
+    /**
+     * Returns the radius of the star.
+     *
+     * @return the radius, in pixels
+     */
+    int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Checks whether a point lies inside the star.
+     *
+     * @param x the x coordinate, relative to the star's bounding box
+     * @param y the y coordinate, relative to the star's bounding box
+     * @return true if the point is inside the star
+     */
+    boolean contains(int x, int y) {
+
+        if (x < 0 || y < 0 || x >= size || y >= size)
+            return false;
+
+        int bit = y * size + x;
+        return (mask[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns the image of the star in a state, rendering it if necessary.
+     *
+     * @param fill the fill state, {@link #EMPTY} or {@link #FILLED}
+     * @param outline the outline state, {@link #NORMAL}, {@link #HOVER} or
+     *            {@link #PRESSED}
+     * @param scale the device scale being painted to
+     * @param gc the graphics configuration being painted to, or null
+     * @return the star image, to be drawn at the star's logical size
+     */
+    BufferedImage getSprite(int fill, int outline, double scale, GraphicsConfiguration gc) {
+
+        int index = fill * OUTLINE_COLORS.length + outline;
+
+        synchronized (sprites) {
+            // usually every star is painted at the same scale
+            BufferedImage[] images = lastSprites;
+            if (images == null || scale != lastScale) {
+                images = sprites.get(scale);
+                if (images == null) {
+                    images = new BufferedImage[FILL_COLORS.length * OUTLINE_COLORS.length];
+                    sprites.put(scale, images);
+                }
+                lastScale = scale;
+                lastSprites = images;
+            }
+            if (images[index] == null)
+                images[index] = render(FILL_COLORS[fill], OUTLINE_COLORS[outline], scale, gc);
+            return images[index];
+        }
+    }
+
+    private BufferedImage render(Color fill, Color outline, double scale,
+            GraphicsConfiguration gc) {
+
+        int w = (int) Math.ceil(size * scale);
+        BufferedImage img = gc != null ? gc.createCompatibleImage(w, w, Transparency.TRANSLUCENT)
+                : new BufferedImage(w, w, BufferedImage.TYPE_INT_ARGB_PRE);
+
+        Graphics2D g = img.createGraphics();
+        g.scale(scale, scale);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // paint fill
+        g.setColor(fill);
+        g.fill(shape);
+
+        // paint outline
+        g.setColor(outline);
+        g.draw(shape);
+
+        g.dispose();
+        return img;
+    }
+
+}
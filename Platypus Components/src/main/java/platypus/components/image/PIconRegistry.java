@@ -0,0 +1,357 @@
+package platypus.components.image;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A process-wide registry of icon images loaded from classpath resources. Each
+ * resource is loaded only once, and every caller receives the same image.
+ * Icons are identified by their resource URL, which callers resolve with
+ * {@link #getResource(Class, String)} against their own class, so relative
+ * paths and resources only visible to the caller's class loader work as with
+ * {@code Class.getResource}.
+ * <p>
+ * The icons bundled with this library can be preloaded in the background into
+ * a single texture atlas, from which each icon is served as a sub-image.
+ * Scaled variants for HiDPI screens are served on request: a resource with an
+ * {@code @2x} suffix (e.g. {@code /icon/add@2x.png}) is used if present,
+ * otherwise the base image is resampled once and cached. Whether such a
+ * resource exists is checked when the base image is loaded.
+ * <p>
+ * Code that paints should not wait for icons: it can use
+ * {@link #getImageIfLoaded(URL, double)} and paint a placeholder, repainting
+ * once {@link #loadAsync(URL, double)} completes. The bundled icons are
+ * preloaded into the atlas as soon as this class is initialized.
+ *
+ * @author Jingchen Xu
+ */
+public class PIconRegistry {
+
+    /** the icons bundled with this library */
+    public static final String[] BUNDLED_ICONS = { "/icon/add.png", "/icon/calendar_20x20.png",
+            "/icon/open.png", "/icon/open (full).png", "/icon/pause.png", "/icon/start.png" };
+
+    private static final String HIDPI_SUFFIX = "@2x";
+    private static final int ATLAS_WIDTH = 128;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> IMAGES = new ConcurrentHashMap<String, CompletableFuture<BufferedImage>>();
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> VARIANTS = new ConcurrentHashMap<String, CompletableFuture<BufferedImage>>();
+    private static final ConcurrentHashMap<String, URL> HIDPI_RESOURCES = new ConcurrentHashMap<String, URL>();
+
+    private static final ExecutorService LOADER = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "PIconRegistry loader");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static volatile BufferedImage atlas;
+
+    static {
+        preloadBundledIcons();
+    }
+
+    private PIconRegistry() {}
+
+    /**
+     * Resolves an icon resource the way {@code context.getResource(path)}
+     * does: relative paths are resolved against the package of the context
+     * class, and the resource is looked up with its class loader.
+     *
+     * @param context the class to resolve the path against, typically the
+     *            caller's {@code getClass()}
+     * @param path the classpath resource path of the icon
+     * @return the resource URL
+     * @throws IllegalArgumentException if the resource does not exist
+     */
+    public static URL getResource(Class<?> context, String path) {
+
+        URL url = context.getResource(path);
+        if (url == null)
+            throw new IllegalArgumentException("icon resource not found: " + path);
+        return url;
+    }
+
+    /**
+     * Returns the image for an icon resource visible to this library, such as
+     * one of the {@link #BUNDLED_ICONS bundled icons}.
+     *
+     * @param path the absolute classpath resource path of the icon
+     * @return the shared icon image
+     * @throws IllegalArgumentException if the resource does not exist
+     * @throws UncheckedIOException if the resource could not be read
+     */
+    public static BufferedImage getImage(String path) {
+        return getImage(getResource(PIconRegistry.class, path));
+    }
+
+    /**
+     * Returns the image for an icon resource, loading it if necessary. Blocks
+     * if the icon is still being loaded.
+     *
+     * @param url the resource URL of the icon
+     * @return the shared icon image
+     * @throws UncheckedIOException if the resource could not be read
+     */
+    public static BufferedImage getImage(URL url) {
+        return join(loadAsync(url));
+    }
+
+    /**
+     * Returns a variant of an icon for a device scale, loading it if
+     * necessary. The variant is sized so that drawing it into the icon's
+     * logical size maps one image pixel to one device pixel. Blocks if the
+     * variant is still being loaded.
+     *
+     * @param url the resource URL of the icon
+     * @param scale the device scale, e.g. 2.0 for a HiDPI screen
+     * @return the shared icon variant
+     */
+    public static BufferedImage getImage(URL url, double scale) {
+        return join(loadAsync(url, scale));
+    }
+
+    /**
+     * Returns a variant of an icon for a device scale if it has already been
+     * loaded, and otherwise starts loading it without waiting.
+     *
+     * @param url the resource URL of the icon
+     * @param scale the device scale, e.g. 2.0 for a HiDPI screen
+     * @return the shared icon variant, or null if it is still loading
+     * @throws UncheckedIOException if the resource could not be read
+     */
+    public static BufferedImage getImageIfLoaded(URL url, double scale) {
+
+        CompletableFuture<BufferedImage> variant = loadAsync(url, scale);
+        return variant.isDone() ? join(variant) : null;
+    }
+
+    /**
+     * Starts loading a variant of an icon for a device scale in the
+     * background, if it has not been loaded already.
+     *
+     * @param url the resource URL of the icon
+     * @param scale the device scale, e.g. 2.0 for a HiDPI screen
+     * @return a future for the shared icon variant
+     */
+    public static CompletableFuture<BufferedImage> loadAsync(final URL url, final double scale) {
+
+        if (scale == 1)
+            return loadAsync(url);
+
+        String key = url.toExternalForm() + '@' + scale;
+        CompletableFuture<BufferedImage> variant = VARIANTS.get(key);
+        if (variant != null)
+            return variant;
+
+        return VARIANTS.computeIfAbsent(key,
+                new Function<String, CompletableFuture<BufferedImage>>() {
+                    @Override
+                    public CompletableFuture<BufferedImage> apply(String key) {
+                        return loadAsync(url).thenApplyAsync(
+                                new Function<BufferedImage, BufferedImage>() {
+                                    @Override
+                                    public BufferedImage apply(BufferedImage base) {
+                                        return createVariant(url, base, scale);
+                                    }
+                                }, LOADER);
+                    }
+                });
+    }
+
+    private static BufferedImage join(CompletableFuture<BufferedImage> image) {
+
+        try {
+            return image.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts loading an icon in the background, if it has not been loaded
+     * already.
+     *
+     * @param url the resource URL of the icon
+     * @return a future for the shared icon image
+     */
+    public static CompletableFuture<BufferedImage> loadAsync(final URL url) {
+
+        // keyed by string, as URL.equals may resolve host names
+        String key = url.toExternalForm();
+        CompletableFuture<BufferedImage> image = IMAGES.get(key);
+        if (image != null)
+            return image;
+
+        return IMAGES.computeIfAbsent(key,
+                new Function<String, CompletableFuture<BufferedImage>>() {
+                    @Override
+                    public CompletableFuture<BufferedImage> apply(String key) {
+                        return CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+                            @Override
+                            public BufferedImage get() {
+                                try {
+                                    BufferedImage image = read(url);
+
+                                    // look for a HiDPI resource now rather than while painting
+                                    URL hidpiUrl = findHiDpiResource(url);
+                                    if (hidpiUrl != null)
+                                        HIDPI_RESOURCES.put(url.toExternalForm(), hidpiUrl);
+                                    return image;
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+                        }, LOADER);
+                    }
+                });
+    }
+
+    /**
+     * Loads all bundled icons in the background and packs them into a single
+     * texture atlas. Afterwards, bundled icons are served as regions of the
+     * atlas. Icons already handed out remain valid.
+     *
+     * @return a future completed once the atlas is ready
+     */
+    public static CompletableFuture<Void> preloadBundledIcons() {
+
+        return CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                buildAtlas();
+            }
+        }, LOADER);
+    }
+
+    private static synchronized void buildAtlas() {
+
+        if (atlas != null)
+            return;
+
+        URL[] urls = new URL[BUNDLED_ICONS.length];
+        BufferedImage[] images = new BufferedImage[BUNDLED_ICONS.length];
+        for (int i = 0; i < images.length; i++) {
+            urls[i] = getResource(PIconRegistry.class, BUNDLED_ICONS[i]);
+            images[i] = getImage(urls[i]);
+        }
+
+        // pack icons into rows, left to right
+        int[] xs = new int[images.length];
+        int[] ys = new int[images.length];
+        int x = 0, y = 0, rowHeight = 0;
+        for (int i = 0; i < images.length; i++) {
+            if (x > 0 && x + images[i].getWidth() > ATLAS_WIDTH) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            xs[i] = x;
+            ys[i] = y;
+            x += images[i].getWidth();
+            rowHeight = Math.max(rowHeight, images[i].getHeight());
+        }
+
+        // draw icons into the atlas
+        BufferedImage img = new BufferedImage(ATLAS_WIDTH, y + rowHeight,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        for (int i = 0; i < images.length; i++)
+            g.drawImage(images[i], xs[i], ys[i], null);
+        g.dispose();
+
+        // serve icons from the atlas from now on
+        for (int i = 0; i < images.length; i++) {
+            BufferedImage region = img.getSubimage(xs[i], ys[i],
+                    images[i].getWidth(), images[i].getHeight());
+            IMAGES.put(urls[i].toExternalForm(), CompletableFuture.completedFuture(region));
+        }
+        atlas = img;
+    }
+
+    private static BufferedImage read(URL url) throws IOException {
+
+        BufferedImage img = ImageIO.read(url);
+        if (img == null)
+            throw new IOException("unsupported image format: " + url);
+        return toARGB(img);
+    }
+
+    private static BufferedImage createVariant(URL url, BufferedImage base, double scale) {
+
+        int w = (int) Math.ceil(base.getWidth() * scale);
+        int h = (int) Math.ceil(base.getHeight() * scale);
+
+        // prefer a high resolution resource next to the base one, if present
+        BufferedImage source = base;
+        if (scale > 1) {
+            URL hidpiUrl = HIDPI_RESOURCES.get(url.toExternalForm());
+            if (hidpiUrl != null)
+                source = getImage(hidpiUrl);
+        }
+
+        if (source.getWidth() == w && source.getHeight() == h)
+            return source;
+
+        BufferedImage variant = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = variant.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(source, 0, 0, w, h, null);
+        g.dispose();
+        return variant;
+    }
+
+    private static URL findHiDpiResource(URL url) {
+
+        String spec = url.toExternalForm();
+        if (spec.contains(HIDPI_SUFFIX + '.'))
+            return null; // already a HiDPI resource
+
+        int slash = spec.lastIndexOf('/');
+        int dot = spec.lastIndexOf('.');
+        String hidpiSpec = dot <= slash ? spec + HIDPI_SUFFIX
+                : spec.substring(0, dot) + HIDPI_SUFFIX + spec.substring(dot);
+
+        // check that it exists in the same location, e.g. the same jar
+        try {
+            URL hidpiUrl = new URL(hidpiSpec);
+            hidpiUrl.openStream().close();
+            return hidpiUrl;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static BufferedImage toARGB(BufferedImage img) {
+
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB)
+            return img;
+
+        BufferedImage converted = new BufferedImage(img.getWidth(), img.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+}
@@ -1,10 +1,27 @@
 package platypus.components.modal;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -12,155 +29,608 @@ import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.SwingUtilities;
 
+import platypus.components.PValidationBinder;
+
 /**
  * A generic modal input dialog pop-up. Aside from basic OK and Cancel buttons,
  * its interface must be entirely specified by its implementation.
+ * <p>
+ * The dialog can be shown either blocking, through {@link #show}, or
+ * asynchronously, through {@link #showAsync}. If an output executor is set,
+ * {@link #getOutput()} is computed on that executor while the dialog displays a
+ * progress indicator, so slow output computation does not freeze the UI.
+ * <p>
+ * Implementations may also supply a {@link #getValidator() validator}, which is
+ * run in the background after input changes to decide whether the OK button
+ * should be enabled.
  *
  * @author Jingchen Xu
- * 
+ *
  * @param <T>
  */
 public abstract class PAbstractBlockingDialog<T> {
 
+    private static final int DEFAULT_VALIDATION_DELAY = 250;
+    private static final Color MESSAGE_COLOR = Color.RED;
+
+    private volatile Executor outputExecutor;
+    private volatile Executor validationExecutor;
+
+    // dialog reuse fields, only accessed on the EDT
+    private boolean reusable = false;
+    private DialogHolder pooled;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<Runnable>();
+
+    // validation fields, only accessed on the EDT
+    private final List<DialogHolder> showing = new ArrayList<DialogHolder>();
+    private PValidationBinder<String> validation;
+    private boolean validating = false;
+    private String validationMessage = null;
+
     /**
      * Returns the custom input UI to be used for the dialog. This will be
      * placed in the Center position of the dialog's BorderLayout, above the OK
      * and Cancel buttons.
-     * 
+     * <p>
+     * This is called once for each dialog window built. Unless the dialog is
+     * {@link #setReusable(boolean) reusable}, several windows may be showing at
+     * once, so a new panel should be returned for each call.
+     *
      * @return the input UI to be used for the dialog
      */
     public abstract JPanel getInputPane();
 
     /**
-     * Retrieves output data from the current UI state.
-     * 
+     * Retrieves output data from the current UI state. If an output executor
+     * has been set, this is called on that executor rather than on the event
+     * dispatch thread.
+     *
      * @return the dialog output data
      */
     public abstract T getOutput();
 
     /**
-     * Shows the dialog and blocks until it is completed or canceled/closed.
-     * 
-     * @param owner the owner of the dialog. Set to null for no modality
-     * @param title title of the dialog
-     * @return user input from the dialog
+     * Sets the executor on which {@link #getOutput()} is run when the OK button
+     * is pressed. While the output is being computed, the OK button is
+     * disabled and a progress indicator is shown; the dialog closes once the
+     * output is ready. If null, output is computed directly on the event
+     * dispatch thread.
+     *
+     * @param executor the executor used to compute output, or null
      */
-    public T show(final JFrame owner, String title) {
+    public void setOutputExecutor(Executor executor) {
+        outputExecutor = executor;
+    }
 
-        final Object lock = new Object();
-        final Object[] output = new Object[1];
+    /**
+     * Returns the executor on which output is computed.
+     *
+     * @return the output executor, or null if output is computed on the event
+     *         dispatch thread
+     */
+    public Executor getOutputExecutor() {
+        return outputExecutor;
+    }
+
+    /**
+     * Sets whether the dialog window is built once and reused across calls to
+     * {@link #show} and {@link #showAsync}. A reused dialog is hidden rather
+     * than disposed when closed, and {@link #resetInput()} is called before
+     * each subsequent showing. If the dialog is shown with a different owner,
+     * a new window is built as usual. If it is shown again while already
+     * showing, the new showing waits until the window is free, so that an
+     * input pane cached by the implementation is never in two windows at once.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @param reusable whether the dialog window should be reused
+     */
+    public void setReusable(boolean reusable) {
+        this.reusable = reusable;
 
-        // set up dialog
-        final JDialog dialog = new JDialog(owner, title);
-        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
-        dialog.setModal(true);
+        // release the pooled window if reuse is turned off; a showing window
+        // is released when it closes
+        if (!reusable && pooled != null && pooled.result == null) {
+            pooled.dialog.dispose();
+            pooled = null;
+        }
 
-        // use window listener to unblock thread on manual close
-        dialog.addWindowListener(new WindowAdapter() {
+        // showings waiting for the pooled window can now have their own
+        if (!reusable) {
+            while (!waiting.isEmpty())
+                SwingUtilities.invokeLater(waiting.poll());
+        }
+    }
 
+    /**
+     * Returns whether the dialog window is reused across showings.
+     *
+     * @return true if the dialog window is reused
+     */
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    /**
+     * Builds, lays out and packs a reusable dialog window ahead of time, so
+     * that the next showing for the same owner only needs to make it visible.
+     * The work is queued on the event dispatch thread, so this may be called
+     * from any thread, e.g. at application startup.
+     *
+     * @param owner the owner the dialog will be shown with
+     * @return a future completed once the dialog window has been built, or
+     *         completed exceptionally with an IllegalStateException if the
+     *         dialog is not reusable
+     */
+    public CompletableFuture<Void> prewarm(final JFrame owner) {
+
+        final CompletableFuture<Void> warmed = new CompletableFuture<Void>();
+
+        SwingUtilities.invokeLater(new Runnable() {
             @Override
-            public void windowClosing(WindowEvent e) {
-                synchronized (lock) {
-                    lock.notify();
+            public void run() {
+                if (!reusable) {
+                    warmed.completeExceptionally(
+                            new IllegalStateException("dialog is not reusable"));
+                    return;
+                }
+
+                // build a new window unless a suitable one is already pooled
+                if (pooled == null || (pooled.result == null && pooled.owner != owner)) {
+                    if (pooled != null)
+                        pooled.dialog.dispose();
+                    pooled = new DialogHolder(owner);
                 }
+                warmed.complete(null);
             }
         });
 
-        dialog.add(getInputPane(), BorderLayout.CENTER);
+        return warmed;
+    }
 
-        // create and add button bar
-        JPanel buttonPane = new JPanel();
-        buttonPane.setLayout(new BoxLayout(buttonPane, BoxLayout.LINE_AXIS));
-        buttonPane.setBorder(BorderFactory.createEmptyBorder(0, 3, 3, 3)); // buffer
-        buttonPane.add(Box.createHorizontalGlue());	// right-align buttons
+    /**
+     * Resets the input UI before a reused dialog is shown again. Called on the
+     * event dispatch thread. Does nothing by default; implementations using
+     * {@link #setReusable(boolean) dialog reuse} should override this to clear
+     * state left over from the previous showing.
+     */
+    protected void resetInput() {
+        // do nothing
+    }
 
-        // store user input on 'OK' press
-        JButton okButton = new JButton("OK");
-        buttonPane.add(okButton);
-        okButton.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                // TODO save user input
-                output[0] = getOutput();
+    /**
+     * Returns a validation task for the current input state. This is called
+     * on the event dispatch thread once input has settled after a call to
+     * {@link #inputChanged()}, and should capture whatever UI state it needs;
+     * the returned task is then run on the validation executor. The task
+     * returns null if the input is valid, or a message describing the problem
+     * otherwise. The OK button is only enabled while the input is valid.
+     * <p>
+     * Returns null by default, meaning any input is valid.
+     *
+     * @return a validation task, or null if no validation is required
+     */
+    protected Callable<String> getValidator() {
+        return null;
+    }
 
-                // kill dialog
-                dialog.setVisible(false);
-                dialog.dispose();
+    /**
+     * Notifies the dialog that its input has changed, scheduling validation.
+     * Validation is debounced: it only starts once no further changes have
+     * been reported for the validation delay, and any validation still
+     * running for older input is canceled and its result discarded. The OK
+     * button is disabled until validation completes.
+     * <p>
+     * Implementations should call this from their input listeners. It may be
+     * called from any thread.
+     */
+    protected final void inputChanged() {
 
-                // unblock thread
-                synchronized (lock) {
-                    lock.notify();
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    inputChanged();
                 }
-            }
-        });
+            });
+            return;
+        }
 
-        // separate buttons with 3px gap
-        buttonPane.add(Box.createHorizontalStrut(3));
+        // discard results for older input before they arrive
+        getValidation().cancel();
+        validating = true;
+        refreshHolders();
 
-        // close window without storing input on 'Cancel' press
-        JButton cnclButton = new JButton("Cancel");
-        buttonPane.add(cnclButton);
-        cnclButton.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                // kill dialog
-                dialog.setVisible(false);
-                dialog.dispose();
+        getValidation().inputChanged();
+    }
 
-                // unblock thread
-                synchronized (lock) {
-                    lock.notify();
+    /**
+     * Sets the executor on which validation tasks are run. If null (the
+     * default), a shared pool of daemon threads is used.
+     *
+     * @param executor the executor used to validate input, or null
+     */
+    public void setValidationExecutor(Executor executor) {
+        validationExecutor = executor;
+    }
+
+    /**
+     * Sets how long input must remain unchanged before it is validated.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @param delay the validation delay, in ms
+     */
+    public void setValidationDelay(int delay) {
+        getValidation().setDelay(delay);
+    }
+
+    /**
+     * Returns the message produced by the most recent validation.
+     * <p>
+     * This method should be called on the event dispatch thread.
+     *
+     * @return the validation message, or null if the input was valid
+     */
+    public String getValidationMessage() {
+        return validationMessage;
+    }
+
+    private PValidationBinder<String> getValidation() {
+
+        if (validation == null) {
+            // debounce and discard stale results through a shared binder
+            validation = new PValidationBinder<String>(new PValidationBinder.Snapshot<String>() {
+                @Override
+                public Callable<String> capture() {
+                    return getValidator();
                 }
-            }
-        });
+            }, new PValidationBinder.Handler<String>() {
+                @Override
+                public void validated(String message, Throwable error) {
+                    validating = false;
+                    validationMessage = error != null ? error.toString() : message;
+                    refreshHolders();
+                }
+            });
+            validation.setDelay(DEFAULT_VALIDATION_DELAY);
 
-        // add panel to bottom of dialog
-        dialog.add(buttonPane, BorderLayout.PAGE_END);
+            // read the executor per validation, as it may be set from any thread
+            validation.setExecutor(new Executor() {
+                @Override
+                public void execute(Runnable task) {
+                    Executor executor = validationExecutor;
+                    (executor == null ? ValidationPool.EXECUTOR : executor).execute(task);
+                }
+            });
+        }
+
+        return validation;
+    }
+
+    private void validateInput() {
+        validating = true;
+        getValidation().validateNow();
+    }
+
+    private void refreshHolders() {
+        for (DialogHolder holder : showing)
+            holder.refresh();
+    }
+
+    /**
+     * Shows the dialog and blocks until it is completed or canceled/closed. If
+     * called from the event dispatch thread, events continue to be pumped while
+     * waiting.
+     *
+     * @param owner the owner of the dialog. Set to null for no modality
+     * @param title title of the dialog
+     * @return user input from the dialog, or null if the dialog was canceled
+     */
+    public T show(final JFrame owner, String title) {
+
+        final CompletableFuture<T> result = showAsync(owner, title);
 
-        // render dialog on the EDT
+        // keep the EDT responsive while waiting on it
+        if (EventQueue.isDispatchThread()) {
+            final SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue()
+                    .createSecondaryLoop();
+            result.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T output, Throwable ex) {
+                    loop.exit();
+                }
+            });
+            if (!result.isDone())
+                loop.enter();
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("could not retrieve dialog output", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Shows the dialog without blocking. The returned future is completed with
+     * the dialog output when OK is pressed, or with null if the dialog is
+     * canceled or closed. Canceling the future closes the dialog.
+     *
+     * @param owner the owner of the dialog. Set to null for no modality
+     * @param title title of the dialog
+     * @return a future for the user input from the dialog
+     */
+    public CompletableFuture<T> showAsync(final JFrame owner, final String title) {
+
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+
+        // build and render dialog on the EDT
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                dialog.pack();
-                dialog.setLocationRelativeTo(owner);
-                dialog.setVisible(true);
-
+                if (!result.isDone()) // skip if canceled before showing
+                    open(owner, title, result);
             }
         });
 
-        block(lock); // block until window is closed
+        return result;
+    }
 
-        @SuppressWarnings("unchecked")
-        T typedOutput = (T) output[0];
-        return typedOutput;
+    private void open(final JFrame owner, final String title, final CompletableFuture<T> result) {
+
+        // wait for the pooled dialog if it is in use
+        if (reusable && pooled != null && pooled.result != null) {
+            waiting.add(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.isDone()) // canceled while waiting
+                        openNextWaiting();
+                    else
+                        open(owner, title, result);
+                }
+            });
+            return;
+        }
+
+        // reuse the pooled dialog if it belongs to the same owner
+        DialogHolder holder;
+        if (reusable && pooled != null && pooled.owner == owner) {
+            holder = pooled;
+            resetInput();
+        } else if (reusable) {
+            if (pooled != null)
+                pooled.dialog.dispose();
+            holder = pooled = new DialogHolder(owner);
+        } else {
+            holder = new DialogHolder(owner);
+        }
+
+        holder.show(title, result);
     }
 
-    private static void block(final Object lock) {
+    private void openNextWaiting() {
 
-        // create and start a thread that puts the lock on wait
-        Thread blockThread = new Thread() {
-            @Override
-            public void run() {
-                synchronized (lock) {
-                    try {
-                        lock.wait();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
+        // posted rather than run, as showing a modal dialog blocks
+        Runnable next = waiting.poll();
+        if (next != null)
+            SwingUtilities.invokeLater(next);
+    }
+
+    /**
+     * A dialog window together with its button bar, along with the pending
+     * result of the show call currently using it. Only accessed on the EDT.
+     */
+    private final class DialogHolder {
+
+        private final JFrame owner;
+        private final JDialog dialog;
+        private final JButton okButton;
+        private final JProgressBar progressBar;
+        private final JLabel messageLabel;
+
+        private CompletableFuture<T> result; // null while not showing
+        private boolean committing = false;
+
+        private DialogHolder(JFrame owner) {
+
+            this.owner = owner;
+
+            // set up dialog
+            dialog = new JDialog(owner);
+            dialog.setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+            dialog.setModal(true);
+
+            // use window listener to complete with no output on manual close
+            dialog.addWindowListener(new WindowAdapter() {
+
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    finish(null, null);
+                }
+            });
+
+            dialog.add(getInputPane(), BorderLayout.CENTER);
+
+            // create and add button bar
+            JPanel buttonPane = new JPanel();
+            buttonPane.setLayout(new BoxLayout(buttonPane, BoxLayout.LINE_AXIS));
+            buttonPane.setBorder(BorderFactory.createEmptyBorder(0, 3, 3, 3)); // buffer
+
+            // progress indicator, shown while output is computed in the background
+            progressBar = new JProgressBar();
+            progressBar.setIndeterminate(true);
+            progressBar.setVisible(false);
+            buttonPane.add(progressBar);
+
+            // validation message display
+            messageLabel = new JLabel();
+            messageLabel.setForeground(MESSAGE_COLOR);
+            buttonPane.add(messageLabel);
+
+            buttonPane.add(Box.createHorizontalGlue());	// right-align buttons
+
+            // compute output on 'OK' press
+            okButton = new JButton("OK");
+            buttonPane.add(okButton);
+            okButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    commit();
+                }
+            });
+
+            // separate buttons with 3px gap
+            buttonPane.add(Box.createHorizontalStrut(3));
+
+            // close window without storing input on 'Cancel' press
+            JButton cnclButton = new JButton("Cancel");
+            buttonPane.add(cnclButton);
+            cnclButton.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    finish(null, null);
                 }
+            });
+
+            // add panel to bottom of dialog
+            dialog.add(buttonPane, BorderLayout.PAGE_END);
+
+            // realize the dialog so that showing it only needs to map the window
+            dialog.pack();
+        }
+
+        private void show(String title, final CompletableFuture<T> result) {
+
+            this.result = result;
+            committing = false;
+            showing.add(this);
+
+            // validate the initial input without waiting for the debounce delay
+            validateInput();
+            refresh();
+
+            // kill dialog however the result is completed, including cancellation
+            result.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T output, Throwable ex) {
+                    close(DialogHolder.this, result);
+                }
+            });
+
+            dialog.setTitle(title);
+            dialog.setLocationRelativeTo(owner);
+            dialog.setVisible(true);
+        }
+
+        private void commit() {
+
+            Executor executor = outputExecutor;
+
+            // compute output directly on the EDT
+            if (executor == null) {
+                try {
+                    finish(getOutput(), null);
+                } catch (RuntimeException e) {
+                    finish(null, e);
+                }
+                return;
             }
-        };
-        blockThread.start();
 
-        // wait for outside code to notify the lock
-        try {
-            blockThread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            // compute output in the background, keeping the dialog open until ready
+            final CompletableFuture<T> pending = result;
+            committing = true;
+            refresh();
+
+            CompletableFuture.supplyAsync(new Supplier<T>() {
+                @Override
+                public T get() {
+                    return getOutput();
+                }
+            }, executor).whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T output, Throwable ex) {
+                    if (ex == null)
+                        pending.complete(output);
+                    else if (ex instanceof CompletionException && ex.getCause() != null)
+                        pending.completeExceptionally(ex.getCause());
+                    else
+                        pending.completeExceptionally(ex);
+                }
+            });
+        }
+
+        private void refresh() {
+
+            okButton.setEnabled(!committing && !validating && validationMessage == null);
+            messageLabel.setText(validating || validationMessage == null ? "" : validationMessage);
+            progressBar.setVisible(committing);
+            progressBar.getParent().revalidate();
+        }
+
+        private void finish(T output, Throwable ex) {
+
+            if (result == null)
+                return;
+            if (ex == null)
+                result.complete(output);
+            else
+                result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Lazily created pool used for validation when no executor is set.
+     */
+    private static final class ValidationPool {
+
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "PAbstractBlockingDialog validation");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    private void close(final DialogHolder holder, final CompletableFuture<T> result) {
+
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    close(holder, result);
+                }
+            });
+            return;
         }
+
+        // ignore stale completions from a previous use of a pooled dialog
+        if (holder.result != result)
+            return;
+        holder.result = null;
+        showing.remove(holder);
+        if (showing.isEmpty() && validation != null)
+            validation.cancel();
+
+        holder.dialog.setVisible(false);
+        if (holder != pooled || !reusable) {
+            holder.dialog.dispose();
+            if (holder == pooled)
+                pooled = null; // reuse was turned off while showing
+        }
+
+        openNextWaiting();
     }
 
 }
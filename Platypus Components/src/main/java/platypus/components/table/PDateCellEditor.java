@@ -0,0 +1,152 @@
+package platypus.components.table;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.EventObject;
+import java.util.TimeZone;
+
+import javax.swing.AbstractCellEditor;
+import javax.swing.JTable;
+import javax.swing.table.TableCellEditor;
+
+import platypus.components.text.PDateChooser;
+import platypus.components.text.PIsoDateCodec;
+
+/**
+ * A table cell editor for dates which reuses a single {@link PDateChooser}
+ * for every cell. The chooser's calendar popup is itself shared by all date
+ * choosers, so editing adds no components per cell. Picking a day from the
+ * calendar ends editing immediately.
+ * <p>
+ * The edited value has the same type as the original cell value: a
+ * {@code Date} or subclass such as {@code java.sql.Timestamp} (at the start
+ * of the day in the editor's time zone), a {@code LocalDate}, an epoch day as
+ * a {@code Long} or {@code Integer}, or a string. Other kinds of numbers are
+ * edited as epoch days and returned as {@code Long}s. Dates outside the years
+ * 0 to 9999 start out blank. Editing cannot be stopped while the text is not
+ * a valid date; clearing the text sets the value to null.
+ *
+ * @author Jingchen Xu
+ */
+public class PDateCellEditor extends AbstractCellEditor implements TableCellEditor {
+
+    private static final long serialVersionUID = -3150837246915607223L;
+
+    private final PDateChooser chooser; // editing component
+    private Class<?> valueType;
+    private Date originalDate; // cloned to build values of the same class
+    private TimeZone timeZone;
+
+    /**
+     * Creates a date editor.
+     */
+    public PDateCellEditor() {
+        super();
+
+        chooser = new PDateChooser();
+        chooser.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                stopCellEditing();
+            }
+        });
+        timeZone = TimeZone.getDefault();
+    }
+
+    /**
+     * Sets the time zone used to convert {@code Date} values to and from
+     * days. This should match the time zone of the column's
+     * {@link PDateCellRenderer}.
+     *
+     * @param timeZone the time zone
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Returns the time zone used to convert {@code Date} values.
+     *
+     * @return the time zone
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Returns the date chooser used for editing, e.g. to apply constraints.
+     *
+     * @return the date chooser
+     */
+    public PDateChooser getChooser() {
+        return chooser;
+    }
+
+    @Override
+    public boolean isCellEditable(EventObject e) {
+        // like the default editors, require a double click to start
+        return !(e instanceof MouseEvent) || ((MouseEvent) e).getClickCount() >= 2;
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value,
+            boolean isSelected, int row, int column) {
+
+        valueType = value != null ? value.getClass() : String.class;
+        originalDate = value instanceof Date ? (Date) value : null;
+
+        if (value instanceof Date)
+            chooser.setText(format(PIsoDateCodec.fromDate((Date) value, timeZone)));
+        else if (value instanceof LocalDate)
+            chooser.setText(format(((LocalDate) value).toEpochDay()));
+        else if (value instanceof Number)
+            chooser.setText(format(((Number) value).longValue()));
+        else
+            chooser.setText(value != null ? value.toString() : "");
+
+        return chooser;
+    }
+
+    @Override
+    public boolean stopCellEditing() {
+
+        // keep editing until the text is a valid date or empty
+        if (!chooser.isValueValid() && !chooser.getText().isEmpty())
+            return false;
+
+        return super.stopCellEditing();
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+
+        String text = chooser.getText();
+        long epochDay = PIsoDateCodec.parse(text);
+        if (epochDay == PIsoDateCodec.INVALID)
+            return String.class.equals(valueType) ? text : null;
+
+        if (originalDate != null) {
+            // clone so that java.sql.Date and Timestamp columns keep their
+            // class
+            Date date = (Date) originalDate.clone();
+            date.setTime(PIsoDateCodec.toDate(epochDay, timeZone).getTime());
+            return date;
+        } else if (LocalDate.class.equals(valueType))
+            return LocalDate.ofEpochDay(epochDay);
+        else if (Integer.class.equals(valueType))
+            return (int) epochDay;
+        else if (Number.class.isAssignableFrom(valueType))
+            return epochDay;
+        return text;
+    }
+
+    // blank for days the codec cannot write
+    private static String format(long epochDay) {
+        return PIsoDateCodec.isInRange(epochDay) ? PIsoDateCodec.format(epochDay) : "";
+    }
+
+}
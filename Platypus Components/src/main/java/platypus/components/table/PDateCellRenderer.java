@@ -0,0 +1,126 @@
+package platypus.components.table;
+
+import java.awt.Component;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.TimeZone;
+
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+
+import platypus.components.text.PIsoDateCodec;
+
+/**
+ * A table cell renderer which displays dates in {@code yyyy-MM-dd} format, as
+ * used by {@link platypus.components.text.PDateChooser PDateChooser}. Cell
+ * values may be {@code Date}s, {@code LocalDate}s, epoch days as
+ * {@code Number}s, or pre-formatted strings. Dates outside the years 0 to
+ * 9999 are shown as blank cells.
+ * <p>
+ * Dates are converted to epoch days without allocation, and the formatted
+ * strings of recently rendered days are cached, so scrolling a long date
+ * column creates almost no garbage.
+ *
+ * @author Jingchen Xu
+ */
+public class PDateCellRenderer implements TableCellRenderer {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final DefaultTableCellRenderer label; // display component
+    private TimeZone timeZone;
+
+    // cache fields
+    private final long[] cachedDays = new long[CACHE_SIZE];
+    private final String[] cachedTexts = new String[CACHE_SIZE];
+
+    /**
+     * Creates a centered date renderer using the default time zone.
+     */
+    public PDateCellRenderer() {
+        this(SwingConstants.CENTER);
+    }
+
+    /**
+     * Creates a date renderer with specified alignment, using the default time
+     * zone.
+     *
+     * @param alignment horizontal alignment of renderer text
+     */
+    public PDateCellRenderer(int alignment) {
+        super();
+
+        label = new DefaultTableCellRenderer();
+        label.setHorizontalAlignment(alignment);
+        timeZone = TimeZone.getDefault();
+    }
+
+    /**
+     * Sets the time zone used to find the day a {@code Date} falls on. A
+     * {@link PDateCellEditor} for the same column should use the same zone.
+     *
+     * @param timeZone the time zone
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Returns the time zone used to find the day a {@code Date} falls on.
+     *
+     * @return the time zone
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value,
+            boolean isSelected, boolean hasFocus, int row, int column) {
+
+        return label.getTableCellRendererComponent(table, toText(value), isSelected,
+                hasFocus, row, column);
+    }
+
+    /**
+     * Converts a cell value into the text to display.
+     *
+     * @param value the cell value
+     * @return the formatted date, or an empty string for unsupported values
+     */
+    private String toText(Object value) {
+
+        if (value instanceof Date) {
+            return format(PIsoDateCodec.fromDate((Date) value, timeZone));
+        } else if (value instanceof LocalDate) {
+            return format(((LocalDate) value).toEpochDay());
+        } else if (value instanceof Number) {
+            return format(((Number) value).longValue());
+        } else if (value instanceof String) {
+            return (String) value;
+        }
+
+        return "";
+    }
+
+    private String format(long epochDay) {
+
+        // the codec cannot write these, and painting must not throw
+        if (!PIsoDateCodec.isInRange(epochDay))
+            return "";
+
+        // consult the cache before formatting
+        int slot = (int) (epochDay & (CACHE_SIZE - 1));
+        String cached = cachedTexts[slot];
+        if (cached != null && cachedDays[slot] == epochDay)
+            return cached;
+
+        String text = PIsoDateCodec.format(epochDay);
+        cachedDays[slot] = epochDay;
+        cachedTexts[slot] = text;
+        return text;
+    }
+
+}
@@ -0,0 +1,106 @@
+package platypus.components.table;
+
+import java.awt.Component;
+import java.awt.Cursor;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.EventObject;
+
+import javax.swing.AbstractCellEditor;
+import javax.swing.JTable;
+import javax.swing.table.TableCellEditor;
+
+import platypus.components.combo.PRatingStamp;
+
+/**
+ * A table cell editor for ratings displayed by a {@link PRatingCellRenderer}.
+ * A single stamp is reused for every cell: clicking a star sets the rating to
+ * that star, or clears it if that star is already the rating, and ends editing
+ * immediately.
+ *
+ * @author Jingchen Xu
+ */
+public class PRatingCellEditor extends AbstractCellEditor implements TableCellEditor {
+
+    private static final long serialVersionUID = -4622019931722406853L;
+
+    private final PRatingStamp stamp; // editing component
+    private int value;
+
+    /**
+     * Creates a rating editor.
+     *
+     * @param n the number of stars
+     * @param starRadius the size of the stars
+     */
+    public PRatingCellEditor(int n, int starRadius) {
+        super();
+
+        stamp = new PRatingStamp(n, starRadius);
+        stamp.setOpaque(true);
+        stamp.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                hover(e, false);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                stamp.setHover(-1, false);
+                stamp.repaint();
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                hover(e, true);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                int star = stamp.starAt(e.getX(), stamp.getWidth());
+                if (star < 0) {
+                    cancelCellEditing();
+                    return;
+                }
+
+                // clicking the current rating clears it
+                value = value == star + 1 ? 0 : star + 1;
+                stopCellEditing();
+            }
+        };
+        stamp.addMouseListener(mouseAdapter);
+        stamp.addMouseMotionListener(mouseAdapter);
+    }
+
+    private void hover(MouseEvent e, boolean pressed) {
+        stamp.setHover(stamp.starAt(e.getX(), stamp.getWidth()), pressed);
+        stamp.repaint();
+    }
+
+    @Override
+    public boolean isCellEditable(EventObject e) {
+        // start on the first click, so a single click sets the rating
+        return !(e instanceof MouseEvent) || ((MouseEvent) e).getClickCount() >= 1;
+    }
+
+    @Override
+    public Component getTableCellEditorComponent(JTable table, Object value,
+            boolean isSelected, int row, int column) {
+
+        this.value = PRatingCellRenderer.toRating(value);
+        stamp.setValue(this.value);
+        stamp.setHover(-1, false);
+        stamp.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+
+        return stamp;
+    }
+
+    @Override
+    public Object getCellEditorValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,162 @@
+package platypus.components.table;
+
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JList;
+import javax.swing.JTable;
+import javax.swing.ListCellRenderer;
+import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.table.TableCellRenderer;
+
+import platypus.components.combo.PRatingStamp;
+
+/**
+ * A table and list cell renderer which paints ratings as rows of stars, like
+ * {@link platypus.components.combo.PRatingBox PRatingBox}, through a single
+ * reusable stamp. Cell values should be numbers from 0 to the star count.
+ * <p>
+ * Hover highlighting can be enabled for a table with
+ * {@link #installHover(JTable)}, which tracks the pointer at table level and
+ * repaints only the cell under it.
+ *
+ * @author Jingchen Xu
+ */
+public class PRatingCellRenderer implements TableCellRenderer, ListCellRenderer<Object> {
+
+    private static final Border NO_FOCUS_BORDER = BorderFactory.createEmptyBorder(1, 1, 1, 1);
+
+    private final PRatingStamp stamp; // display component
+
+    // hover fields
+    private JTable hoverTable;
+    private int hoverRow = -1, hoverColumn = -1, hoverStar = -1;
+
+    /**
+     * Creates a rating renderer.
+     *
+     * @param n the number of stars
+     * @param starRadius the size of the stars
+     */
+    public PRatingCellRenderer(int n, int starRadius) {
+        super();
+
+        stamp = new PRatingStamp(n, starRadius);
+        stamp.setOpaque(true);
+    }
+
+    /**
+     * Returns the stamp used to paint ratings.
+     *
+     * @return the rating stamp
+     */
+    public PRatingStamp getStamp() {
+        return stamp;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value,
+            boolean isSelected, boolean hasFocus, int row, int column) {
+
+        stamp.setValue(toRating(value));
+        if (table == hoverTable && row == hoverRow && column == hoverColumn)
+            stamp.setHover(hoverStar, false);
+        else
+            stamp.setHover(-1, false);
+
+        // colors are read per call to follow the table and look and feel
+        stamp.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+        stamp.setBorder(hasFocus ? getFocusBorder("Table.focusCellHighlightBorder")
+                : NO_FOCUS_BORDER);
+
+        return stamp;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Object> list, Object value,
+            int index, boolean isSelected, boolean cellHasFocus) {
+
+        stamp.setValue(toRating(value));
+        stamp.setHover(-1, false);
+
+        stamp.setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+        stamp.setBorder(cellHasFocus ? getFocusBorder("List.focusCellHighlightBorder")
+                : NO_FOCUS_BORDER);
+
+        return stamp;
+    }
+
+    private static Border getFocusBorder(String key) {
+        Border border = UIManager.getBorder(key);
+        return border != null ? border : NO_FOCUS_BORDER;
+    }
+
+    /**
+     * Enables hover highlighting for cells of a table rendered by this
+     * renderer. The star under the pointer is found from the cell bounds, and
+     * only the affected cells are repainted when it changes.
+     *
+     * @param table the table to track the pointer in
+     */
+    public void installHover(final JTable table) {
+
+        MouseAdapter hoverTracker = new MouseAdapter() {
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                Point p = e.getPoint();
+                int row = table.rowAtPoint(p);
+                int column = table.columnAtPoint(p);
+
+                int star = -1;
+                if (row >= 0 && column >= 0 && table.getCellRenderer(row, column) == PRatingCellRenderer.this) {
+                    Rectangle cell = table.getCellRect(row, column, false);
+                    star = stamp.starAt(p.x - cell.x, cell.width);
+                }
+                setHover(table, star < 0 ? -1 : row, star < 0 ? -1 : column, star);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHover(table, -1, -1, -1);
+            }
+        };
+        table.addMouseListener(hoverTracker);
+        table.addMouseMotionListener(hoverTracker);
+    }
+
+    private void setHover(JTable table, int row, int column, int star) {
+
+        if (table == hoverTable && row == hoverRow && column == hoverColumn && star == hoverStar)
+            return;
+
+        // repaint the previously hovered cell and the new one
+        repaintCell(hoverTable, hoverRow, hoverColumn);
+        hoverTable = row >= 0 ? table : null;
+        hoverRow = row;
+        hoverColumn = column;
+        hoverStar = star;
+        repaintCell(hoverTable, hoverRow, hoverColumn);
+    }
+
+    private static void repaintCell(JTable table, int row, int column) {
+        if (table != null && row >= 0 && column >= 0)
+            table.repaint(table.getCellRect(row, column, false));
+    }
+
+    /**
+     * Converts a cell value into a rating.
+     *
+     * @param value the cell value
+     * @return the rating, or 0 if the value is not a number
+     */
+    static int toRating(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+}
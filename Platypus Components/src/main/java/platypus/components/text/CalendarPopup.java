@@ -0,0 +1,320 @@
+package platypus.components.text;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.LookAndFeel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+
+import platypus.components.combo.PHorizontalSpinField;
+
+/**
+ * The calendar popup shared by all date choosers. It is built the first time
+ * any chooser opens it, and is then rebound to whichever chooser opens it
+ * next, so a form with many date fields only ever holds one calendar. Must be
+ * used on the event dispatch thread.
+ *
+ * @author Jingchen Xu
+ */
+final class CalendarPopup implements ActionListener {
+
+    /**
+     * A component which opens the calendar popup and receives the selected
+     * date.
+     */
+    interface Client {
+
+        /**
+         * Returns the date to highlight and to open the calendar at.
+         *
+         * @return the selected epoch day, or {@link PIsoDateCodec#INVALID} for
+         *         none
+         */
+        long getSelectedDay();
+
+        /**
+         * Checks whether a day may be selected. Days which are not allowed
+         * are displayed but disabled.
+         *
+         * @param epochDay the day to check
+         * @return true if the day can be clicked
+         */
+        boolean isAllowed(long epochDay);
+
+        /**
+         * Checks whether a day lies in a highlighted range, such as the range
+         * chosen in a {@link PDateRangeChooser}.
+         *
+         * @param epochDay the day to check
+         * @return true if the day should be highlighted
+         */
+        boolean isHighlighted(long epochDay);
+
+        /**
+         * Called when a day in the calendar is clicked, before the popup
+         * closes.
+         *
+         * @param epochDay the day clicked
+         */
+        void daySelected(long epochDay);
+    }
+
+    private static final String[] MONTHS = { "January", "February", "March", "April", "May", "June",
+            "July", "August", "September", "October", "November", "December" };
+    private static final String[] DAYS = { "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
+
+    /** cell states */
+    private static final byte OTHER_MONTH = 0, SELECTED = 1, IN_RANGE = 2, NORMAL = 3;
+    private static final Color RANGE_COLOR = new Color(0x3366CC);
+
+    private static CalendarPopup instance;
+
+    // UI components
+    private final JPopupMenu popup;
+    private final PHorizontalSpinField monthSpinner;
+    private final PHorizontalSpinField yearSpinner;
+    private final JButton[] buttons;
+
+    // state fields
+    private Client client;
+    private LookAndFeel lookAndFeel;
+    private final MonthGrid grid;
+
+    // what each button currently displays, so unchanged cells are skipped
+    private final long[] shownDays = new long[MonthGrid.CELLS];
+    private final byte[] shownStates = new byte[MonthGrid.CELLS];
+    private final boolean[] shownEnabled = new boolean[MonthGrid.CELLS];
+    private Color normalColor;
+
+    /**
+     * Returns the shared calendar popup, creating it on first use.
+     *
+     * @return the calendar popup
+     */
+    static CalendarPopup getInstance() {
+
+        if (instance == null)
+            instance = new CalendarPopup();
+        return instance;
+    }
+
+    private CalendarPopup() {
+        popup = new JPopupMenu();
+        popup.setLayout(new BorderLayout());
+        lookAndFeel = UIManager.getLookAndFeel();
+
+        JPanel upperPanel = new JPanel(new BorderLayout(5, 0));
+
+        // create and add spinners
+        long today = PIsoDateCodec.today();
+        grid = new MonthGrid((int) PIsoDateCodec.year(today), PIsoDateCodec.month(today));
+        monthSpinner = new PHorizontalSpinField(MONTHS);
+        monthSpinner.setIndex(PIsoDateCodec.month(today) - 1);
+        monthSpinner.setPreferredSize(new Dimension(120, 20));
+        monthSpinner.addActionListener(this);
+        upperPanel.add(monthSpinner, BorderLayout.CENTER);
+        yearSpinner = new PHorizontalSpinField((int) PIsoDateCodec.year(today));
+        // only offer the years the codec can format
+        yearSpinner.setIndexRange((int) PIsoDateCodec.year(PIsoDateCodec.MIN_EPOCH_DAY),
+                (int) PIsoDateCodec.year(PIsoDateCodec.MAX_EPOCH_DAY));
+        yearSpinner.addActionListener(this);
+        upperPanel.add(yearSpinner, BorderLayout.LINE_END);
+
+        // create and add day of the week labels
+        JPanel dayOfWeekLabels = new JPanel(new GridLayout(0, 7));
+        for (String day : DAYS) {
+            JLabel label = new JLabel(day);
+            label.setHorizontalAlignment(SwingConstants.CENTER);
+            dayOfWeekLabels.add(label);
+        }
+        upperPanel.add(dayOfWeekLabels, BorderLayout.PAGE_END);
+
+        popup.add(upperPanel, BorderLayout.PAGE_START);
+
+        // instantiate and add buttons for each day
+        JPanel datePanel = new JPanel(new GridLayout(0, MonthGrid.COLUMNS));
+        buttons = new JButton[MonthGrid.CELLS];
+        for (int i = 0; i < MonthGrid.CELLS; i++) {
+            buttons[i] = new JButton();
+            buttons[i].setMargin(new Insets(1, 1, 1, 0));
+            buttons[i].setHorizontalAlignment(SwingConstants.CENTER);
+            buttons[i].addActionListener(this);
+            datePanel.add(buttons[i]);
+        }
+        popup.add(datePanel, BorderLayout.CENTER);
+        invalidateButtons();
+
+        // release the client once the popup closes, so it can be collected
+        popup.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                // do nothing
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+                client = null;
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+                // do nothing
+            }
+        });
+    }
+
+    /**
+     * Binds the popup to a client and shows it at the month of the client's
+     * selected date, or the current month if there is none. The popup appears
+     * below the invoker, aligned with its right edge.
+     *
+     * @param client the client to receive the selected date
+     * @param invoker the component to show the popup under
+     */
+    void show(Client client, Component invoker) {
+
+        // the popup is not in any window while hidden, so it misses
+        // look and feel updates
+        if (lookAndFeel != UIManager.getLookAndFeel()) {
+            lookAndFeel = UIManager.getLookAndFeel();
+            SwingUtilities.updateComponentTreeUI(popup);
+            invalidateButtons();
+        }
+
+        this.client = client;
+        long selected = client.getSelectedDay();
+        showMonth(selected != PIsoDateCodec.INVALID ? selected : PIsoDateCodec.today());
+
+        int x = invoker.getWidth() - popup.getPreferredSize().width;
+        int y = invoker.getHeight();
+        popup.show(invoker, x, y);
+    }
+
+    /**
+     * Hides the popup.
+     */
+    void hide() {
+        popup.setVisible(false);
+    }
+
+    /**
+     * Checks whether the popup is open for a client. Does not create the
+     * popup if it has not been used yet.
+     *
+     * @param client the client to check
+     * @return true if the popup is showing and bound to the client
+     */
+    static boolean isShowingFor(Client client) {
+        return instance != null && instance.client == client && instance.popup.isVisible();
+    }
+
+    /**
+     * Navigates to the month containing a date.
+     *
+     * @param epochDay the date to show
+     */
+    void showMonth(long epochDay) {
+        monthSpinner.setIndex(PIsoDateCodec.month(epochDay) - 1);
+        yearSpinner.setIndex((int) PIsoDateCodec.year(epochDay));
+        updateButtons();
+    }
+
+    // forces every button to be updated on the next refresh
+    private void invalidateButtons() {
+        Arrays.fill(shownDays, PIsoDateCodec.INVALID);
+        Arrays.fill(shownStates, (byte) -1);
+        Arrays.fill(shownEnabled, true);
+        for (JButton b : buttons)
+            b.setEnabled(true);
+        normalColor = UIManager.getColor("Button.foreground");
+    }
+
+    private void updateButtons() {
+
+        // get selected date, or current date if there is none
+        long selected = client != null ? client.getSelectedDay() : PIsoDateCodec.INVALID;
+        if (selected == PIsoDateCodec.INVALID)
+            selected = PIsoDateCodec.today();
+
+        grid.setMonth(yearSpinner.getIndex(), monthSpinner.getIndex() + 1);
+
+        // only touch the buttons whose day or highlight actually changed
+        for (int i = 0; i < buttons.length; i++) {
+            JButton b = buttons[i];
+            long day = grid.getDay(i);
+
+            if (day != shownDays[i]) {
+                // display the day of the month on the button
+                b.setText(grid.getLabel(i));
+                shownDays[i] = day;
+            }
+
+            // grey out days in other months, and highlight selected day red,
+            // or current day if none selected
+            byte state = !grid.isInMonth(i) ? OTHER_MONTH : day == selected ? SELECTED
+                    : client != null && client.isHighlighted(day) ? IN_RANGE : NORMAL;
+            if (state != shownStates[i]) {
+                b.setForeground(state == OTHER_MONTH ? Color.GRAY : state == SELECTED ? Color.RED
+                        : state == IN_RANGE ? RANGE_COLOR : normalColor);
+                shownStates[i] = state;
+            }
+
+            // disable days the client does not allow, and the overflow days
+            // before year 0 or after year 9999
+            boolean enabled = PIsoDateCodec.isInRange(day)
+                    && (client == null || client.isAllowed(day));
+            if (enabled != shownEnabled[i]) {
+                b.setEnabled(enabled);
+                shownEnabled[i] = enabled;
+            }
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == monthSpinner) {
+
+            // carry month wrap-arounds over into the year spinner, stopping
+            // at the first or last month if the year cannot move any further
+            int wraps = monthSpinner.getLastWraps();
+            if (wraps != 0) {
+                long target = (long) yearSpinner.getIndex() + wraps;
+                yearSpinner.spin(wraps);
+                if (yearSpinner.getIndex() != target)
+                    monthSpinner.setIndex(wraps > 0 ? MONTHS.length - 1 : 0);
+            }
+
+            updateButtons();
+
+        } else if (e.getSource() == yearSpinner) {
+            updateButtons();
+
+        } else {
+            // look up the clicked day from the grid rather than reparsing text
+            for (int i = 0; i < buttons.length; i++) {
+                if (e.getSource() == buttons[i]) {
+                    if (client != null)
+                        client.daySelected(grid.getDay(i));
+                    break;
+                }
+            }
+            hide();
+        }
+    }
+
+}
@@ -0,0 +1,502 @@
+package platypus.components.text;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes the parts of input text matched by a regular expression, as used by
+ * {@link PRegexField}. Filters are shared between all fields using the same
+ * regex, so each regex is compiled once.
+ * <p>
+ * Regexes consisting of a single character class, such as {@code [\D]} or
+ * {@code [^0-9a-fA-F]}, are filtered by looking characters up in a bitset
+ * rather than by running the regex engine. Text from which nothing is removed
+ * is returned as-is, without allocating. Long text can instead be filtered
+ * in steps through a {@link Pass}, e.g. on a background thread.
+ *
+ * @author Jingchen Xu
+ */
+abstract class InputFilter {
+
+    private static final ConcurrentHashMap<String, InputFilter> CACHE = new ConcurrentHashMap<String, InputFilter>();
+
+    /**
+     * Returns the shared filter for a regex.
+     *
+     * @param regex a regular expression matching the text to remove
+     * @return the filter
+     * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+     */
+    static InputFilter forRegex(String regex) {
+
+        InputFilter filter = CACHE.get(regex);
+        if (filter == null) {
+            long[] bits = CharClassParser.parse(regex);
+            filter = bits != null ? new CharClassFilter(bits) : new PatternFilter(regex);
+            InputFilter existing = CACHE.putIfAbsent(regex, filter);
+            if (existing != null)
+                filter = existing;
+        }
+
+        return filter;
+    }
+
+    /**
+     * Removes the matched parts of a string.
+     *
+     * @param text the text to filter
+     * @return the filtered text, or {@code text} itself if nothing was removed
+     */
+    abstract String filter(String text);
+
+    /**
+     * Starts filtering a string in steps.
+     *
+     * @param text the text to filter
+     * @return the pass, with no text consumed yet
+     */
+    abstract Pass start(String text);
+
+    /**
+     * The state of filtering one string in steps, so that progress can be
+     * reported and the work abandoned between steps. A pass is not thread
+     * safe, but may be handed between threads.
+     */
+    abstract static class Pass {
+
+        final String text;
+        int position = 0; // input consumed so far
+
+        Pass(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Filters the next part of the text.
+         *
+         * @param chars roughly how many characters of input to consume
+         * @return true if the whole text has been filtered
+         */
+        abstract boolean step(int chars);
+
+        /**
+         * Returns the filtered text, once every step has been run.
+         *
+         * @return the filtered text
+         */
+        abstract String getResult();
+
+        /**
+         * Returns how much of the input has been consumed.
+         *
+         * @return the number of characters consumed
+         */
+        int getPosition() {
+            return position;
+        }
+
+        /**
+         * Returns the length of the input.
+         *
+         * @return the number of characters to filter
+         */
+        int getLength() {
+            return text.length();
+        }
+    }
+
+    /**
+     * Filters with a bitset of the characters to remove.
+     */
+    static final class CharClassFilter extends InputFilter {
+
+        private final long[] removed; // one bit per char value
+
+        CharClassFilter(long[] removed) {
+            this.removed = removed;
+        }
+
+        /**
+         * Checks whether a character is removed by this filter.
+         *
+         * @param c the character
+         * @return true if the character is filtered out
+         */
+        boolean isRemoved(char c) {
+            return (removed[c >>> 6] & (1L << c)) != 0;
+        }
+
+        @Override
+        String filter(String text) {
+
+            // find the first character to remove, if any
+            int length = text.length();
+            int first = 0;
+            while (first < length && !isRemoved(text.charAt(first)))
+                first++;
+            if (first == length)
+                return text;
+
+            char[] kept = new char[length - 1];
+            text.getChars(0, first, kept, 0);
+            int count = first;
+            for (int i = first + 1; i < length; i++) {
+                char c = text.charAt(i);
+                if (!isRemoved(c))
+                    kept[count++] = c;
+            }
+
+            return new String(kept, 0, count);
+        }
+
+        @Override
+        Pass start(String text) {
+
+            return new Pass(text) {
+
+                private final char[] kept = new char[text.length()];
+                private int count = 0;
+
+                @Override
+                boolean step(int chars) {
+
+                    int end = Math.min(text.length(), position + chars);
+                    for (int i = position; i < end; i++) {
+                        char c = text.charAt(i);
+                        if (!isRemoved(c))
+                            kept[count++] = c;
+                    }
+                    position = end;
+
+                    return end == text.length();
+                }
+
+                @Override
+                String getResult() {
+                    return new String(kept, 0, count);
+                }
+            };
+        }
+    }
+
+    /**
+     * Filters with a compiled regular expression.
+     */
+    static final class PatternFilter extends InputFilter {
+
+        private final Pattern pattern;
+
+        PatternFilter(String regex) {
+            pattern = Pattern.compile(regex);
+        }
+
+        /**
+         * Returns the compiled pattern.
+         *
+         * @return the pattern
+         */
+        Pattern getPattern() {
+            return pattern;
+        }
+
+        @Override
+        String filter(String text) {
+
+            // empty matches remove nothing, so they do not count as changes
+            Matcher matcher = pattern.matcher(text);
+            boolean found;
+            while ((found = matcher.find()) && matcher.start() == matcher.end())
+                ;
+            if (!found)
+                return text;
+
+            StringBuffer sb = new StringBuffer(text.length());
+            do {
+                matcher.appendReplacement(sb, "");
+            } while (matcher.find());
+            matcher.appendTail(sb);
+
+            return sb.toString();
+        }
+
+        @Override
+        Pass start(String text) {
+
+            // a single matcher, so that matches may span steps
+            final Matcher matcher = pattern.matcher(text);
+            return new Pass(text) {
+
+                private final StringBuilder kept = new StringBuilder(text.length());
+
+                @Override
+                boolean step(int chars) {
+
+                    // each find may scan past the step's end to the next match
+                    int limit = position + chars;
+                    while (position < limit) {
+                        if (!matcher.find()) {
+                            kept.append(text, position, text.length());
+                            position = text.length();
+                            return true;
+                        }
+                        kept.append(text, position, matcher.start());
+                        position = matcher.end();
+                    }
+
+                    return false;
+                }
+
+                @Override
+                String getResult() {
+                    return kept.toString();
+                }
+            };
+        }
+    }
+
+    /**
+     * Recognizes regexes consisting of a single character class and converts
+     * them into bitsets. Anything beyond literal characters, ranges, negation
+     * and the predefined classes {@code \d \s \w} and their complements is
+     * left to the regex engine.
+     */
+    static final class CharClassParser {
+
+        private static final int BITSET_LONGS = 65536 / 64;
+
+        // thrown wherever the regex turns out not to be a simple class
+        private static final NotSimpleException NOT_SIMPLE = new NotSimpleException();
+
+        private final String regex;
+        private int pos;
+        private int escapedChar;
+
+        private CharClassParser(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * Converts a regex into a bitset of the characters it matches.
+         *
+         * @param regex the regex
+         * @return the bitset, or null if the regex is not a simple character
+         *         class
+         */
+        static long[] parse(String regex) {
+
+            try {
+                return new CharClassParser(regex).parseRegex();
+            } catch (NotSimpleException e) {
+                return null;
+            }
+        }
+
+        private long[] parseRegex() {
+
+            long[] bits;
+            if (regex.startsWith("["))
+                bits = parseClass();
+            else if (regex.startsWith("\\")) {
+                // a predefined class or escaped character outside brackets
+                bits = parseEscape();
+                if (bits == null) {
+                    bits = new long[BITSET_LONGS];
+                    setLiteralRange(bits, escapedChar, escapedChar);
+                }
+            } else
+                throw NOT_SIMPLE;
+
+            if (pos != regex.length())
+                throw NOT_SIMPLE;
+            return bits;
+        }
+
+        private long[] parseClass() {
+
+            pos++; // '['
+            boolean negated = peek() == '^';
+            if (negated)
+                pos++;
+
+            // leave empty classes to the regex engine to reject
+            if (peek() == ']')
+                throw NOT_SIMPLE;
+
+            long[] bits = new long[BITSET_LONGS];
+            while (peek() != ']') {
+                char c = next();
+                if (c == '[' || (c == '&' && peek() == '&'))
+                    throw NOT_SIMPLE; // nested classes
+
+                long[] escaped = null;
+                int low;
+                if (c == '\\') {
+                    pos--;
+                    escaped = parseEscape();
+                    low = escapedChar;
+                } else {
+                    low = c;
+                }
+
+                if (escaped != null) {
+                    or(bits, escaped);
+                    continue;
+                }
+
+                // a range, unless the hyphen is the last character
+                int high = low;
+                if (peek() == '-' && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    char h = next();
+                    if (h == '\\') {
+                        pos--;
+                        if (parseEscape() != null)
+                            throw NOT_SIMPLE;
+                        high = escapedChar;
+                    } else if (h == '[') {
+                        throw NOT_SIMPLE;
+                    } else {
+                        high = h;
+                    }
+                    if (high < low)
+                        throw NOT_SIMPLE;
+                }
+                setLiteralRange(bits, low, high);
+            }
+            pos++; // ']'
+
+            if (negated) {
+                for (int i = 0; i < bits.length; i++)
+                    bits[i] = ~bits[i];
+            }
+            return bits;
+        }
+
+        // returns the set for a predefined class, or null with the escaped
+        // character stored in escapedChar
+        private long[] parseEscape() {
+
+            pos++; // '\\'
+            char c = next();
+            long[] bits = new long[BITSET_LONGS];
+            switch (c) {
+            case 'd':
+                setRange(bits, '0', '9');
+                return bits;
+            case 'D':
+                setRange(bits, '0', '9');
+                return not(bits);
+            case 's':
+                setWhitespace(bits);
+                return bits;
+            case 'S':
+                setWhitespace(bits);
+                return not(bits);
+            case 'w':
+                setWord(bits);
+                return bits;
+            case 'W':
+                setWord(bits);
+                return not(bits);
+            case 't':
+                escapedChar = '\t';
+                return null;
+            case 'n':
+                escapedChar = '\n';
+                return null;
+            case 'r':
+                escapedChar = '\r';
+                return null;
+            case 'f':
+                escapedChar = '\f';
+                return null;
+            case 'x':
+                escapedChar = hex(2);
+                return null;
+            case 'u':
+                escapedChar = hex(4);
+                return null;
+            default:
+                // only punctuation may be escaped as a literal
+                if (Character.isLetterOrDigit(c) || c > 127)
+                    throw NOT_SIMPLE;
+                escapedChar = c;
+                return null;
+            }
+        }
+
+        private int hex(int digits) {
+
+            int value = 0;
+            for (int i = 0; i < digits; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0)
+                    throw NOT_SIMPLE;
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        private char peek() {
+            if (pos >= regex.length())
+                throw NOT_SIMPLE; // unterminated
+            return regex.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        // surrogates in a class match whole code points, not single chars
+        private static void setLiteralRange(long[] bits, int low, int high) {
+            if (low <= Character.MAX_SURROGATE && high >= Character.MIN_SURROGATE)
+                throw NOT_SIMPLE;
+            setRange(bits, low, high);
+        }
+
+        private static void setRange(long[] bits, int low, int high) {
+            for (int c = low; c <= high; c++)
+                bits[c >>> 6] |= 1L << c;
+        }
+
+        private static void setWhitespace(long[] bits) {
+            setRange(bits, '\t', '\r'); // \t \n \x0B \f \r
+            setRange(bits, ' ', ' ');
+        }
+
+        private static void setWord(long[] bits) {
+            setRange(bits, 'a', 'z');
+            setRange(bits, 'A', 'Z');
+            setRange(bits, '0', '9');
+            setRange(bits, '_', '_');
+        }
+
+        private static long[] not(long[] bits) {
+            for (int i = 0; i < bits.length; i++)
+                bits[i] = ~bits[i];
+            return bits;
+        }
+
+        private static void or(long[] bits, long[] other) {
+            for (int i = 0; i < bits.length; i++)
+                bits[i] |= other[i];
+        }
+
+        /**
+         * Signals that a regex is left to the regex engine. Shared and without
+         * a stack trace, as it only ever unwinds to {@link #parse(String)}.
+         */
+        private static final class NotSimpleException extends RuntimeException {
+
+            private static final long serialVersionUID = 1L;
+
+            NotSimpleException() {
+                super(null, null, false, false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package platypus.components.text;
+
+/**
+ * The 6x7 grid of days shown by the calendar popup for one month, starting on
+ * the Sunday on or before the first of the month. Cells are computed with
+ * epoch-day arithmetic, and the labels displayed in them come from a shared
+ * table, so navigating between months allocates almost nothing.
+ *
+ * @author Jingchen Xu
+ */
+final class MonthGrid {
+
+    /** number of rows in the grid */
+    static final int ROWS = 6;
+
+    /** number of columns in the grid, one per day of the week */
+    static final int COLUMNS = 7;
+
+    /** number of cells in the grid */
+    static final int CELLS = ROWS * COLUMNS;
+
+    private static final String[] DAY_LABELS = new String[32];
+    static {
+        for (int i = 1; i < DAY_LABELS.length; i++)
+            DAY_LABELS[i] = Integer.toString(i);
+    }
+
+    private int year;
+    private int month;
+    private long firstCell;
+    private long monthStart;
+    private long monthEnd;
+
+    /**
+     * Creates a grid for a month.
+     *
+     * @param year the year
+     * @param month the month, from 1 to 12
+     */
+    MonthGrid(int year, int month) {
+        month(year, month);
+    }
+
+    private void month(int year, int month) {
+        this.year = year;
+        this.month = month;
+        monthStart = PIsoDateCodec.toEpochDay(year, month, 1);
+        monthEnd = monthStart + PIsoDateCodec.lengthOfMonth(year, month);
+        firstCell = monthStart - PIsoDateCodec.dayOfWeek(monthStart);
+    }
+
+    /**
+     * Moves the grid to another month.
+     *
+     * @param year the year
+     * @param month the month, from 1 to 12
+     * @return true if the month changed
+     */
+    boolean setMonth(int year, int month) {
+
+        if (year == this.year && month == this.month)
+            return false;
+
+        month(year, month);
+        return true;
+    }
+
+    /**
+     * Returns the year of the grid's month.
+     *
+     * @return the year
+     */
+    int getYear() {
+        return year;
+    }
+
+    /**
+     * Returns the grid's month.
+     *
+     * @return the month, from 1 to 12
+     */
+    int getMonth() {
+        return month;
+    }
+
+    /**
+     * Returns the date in a cell.
+     *
+     * @param cell the cell index, from 0 to {@link #CELLS} - 1, in row-major
+     *            order
+     * @return the epoch day
+     */
+    long getDay(int cell) {
+        return firstCell + cell;
+    }
+
+    /**
+     * Returns the cell showing a date.
+     *
+     * @param epochDay the date
+     * @return the cell index, or -1 if the date is not in the grid
+     */
+    int getCell(long epochDay) {
+        long cell = epochDay - firstCell;
+        return cell >= 0 && cell < CELLS ? (int) cell : -1;
+    }
+
+    /**
+     * Checks whether a cell shows a day of the grid's month, as opposed to
+     * the end of the previous month or the start of the next.
+     *
+     * @param cell the cell index
+     * @return true if the cell's date is in the month
+     */
+    boolean isInMonth(int cell) {
+        long day = firstCell + cell;
+        return day >= monthStart && day < monthEnd;
+    }
+
+    /**
+     * Returns the day of the month to display in a cell.
+     *
+     * @param cell the cell index
+     * @return the day of the month as a shared string
+     */
+    String getLabel(int cell) {
+
+        long day = firstCell + cell;
+        int dayOfMonth;
+        if (day < monthStart)
+            dayOfMonth = PIsoDateCodec.dayOfMonth(day);
+        else if (day < monthEnd)
+            dayOfMonth = (int) (day - monthStart) + 1;
+        else
+            dayOfMonth = (int) (day - monthEnd) + 1;
+
+        return DAY_LABELS[dayOfMonth];
+    }
+
+}
@@ -2,66 +2,81 @@ package platypus.components.text;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.GridLayout;
-import java.awt.Insets;
+import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 
-import javax.swing.JButton;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.JPopupMenu;
-import javax.swing.SwingConstants;
 import javax.swing.UIManager;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
-import javax.swing.event.PopupMenuEvent;
-import javax.swing.event.PopupMenuListener;
+import javax.swing.text.Document;
 
+import platypus.components.PActionListenerList;
+import platypus.components.PDiagnostics;
+import platypus.components.PValidationBinder;
 import platypus.components.button.PImageButton;
-import platypus.components.combo.PHorizontalSpinField;
 
 /**
  * Swing component for intuitive date selection. Consists of an editable text
  * label with the date and a button which displays a calendar for selecting the
- * date.
+ * date. The calendar is built on first use and shared by all date choosers.
  * 
  * @author Jingchen Xu
  *
  */
-public class PDateChooser extends JPanel implements ActionListener, DocumentListener {
+public class PDateChooser extends JPanel implements ActionListener {
 
     private static final long serialVersionUID = -1867392930456573885L;
 
+    /** diagnostic event reported when text cannot be parsed as a date */
+    public static final String UNPARSEABLE_DATE = "PDateChooser.unparseableDate";
+    /** diagnostic event reported when a null date string is given */
+    public static final String NULL_DATE = "PDateChooser.nullDate";
+
     // constants
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat(
-            "yyyy-MM-dd");
-    static {
-        DATE_FORMAT.setLenient(false);
-    }
     private static final String ICON_PATH = "/icon/calendar_20x20.png";
     private static final Color BUTTON_IDLE_COLOR = UIManager.getColor("Label.background");
     private static final Color BUTTON_OVER_COLOR = BUTTON_IDLE_COLOR.darker();
     private static final Color BUTTON_DOWN_COLOR = BUTTON_OVER_COLOR.darker();
-    private static final String[] MONTHS = { "January", "February", "March", "April", "May", "June",
-            "July", "August", "September", "October", "November", "December" };
-    private static final String[] DAYS = { "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT" };
 
     // UI components
     private PShyTextField textField;
     private PImageButton popupButton;
-    private JPopupMenu popup;
-    private PHorizontalSpinField monthSpinner;
-    private PHorizontalSpinField yearSpinner;
-    private JButton[] buttons;
 
     // state fields
     private boolean valueValid;
+    private PValidationBinder<Boolean> validation;
+    private PDateConstraints constraints = PDateConstraints.NONE;
+    private final PActionListenerList listeners = new PActionListenerList();
+    private PDateRangeChooser range; // the range this chooser is an endpoint of
+
+    // connects this chooser to the shared calendar popup while it is open
+    private final CalendarPopup.Client popupClient = new CalendarPopup.Client() {
+
+        @Override
+        public long getSelectedDay() {
+            return PIsoDateCodec.parse(getText());
+        }
+
+        @Override
+        public boolean isAllowed(long epochDay) {
+            return constraints.isAllowed(epochDay);
+        }
+
+        @Override
+        public boolean isHighlighted(long epochDay) {
+            return range != null && range.isInRange(epochDay);
+        }
+
+        @Override
+        public void daySelected(long epochDay) {
+            String text = PIsoDateCodec.format(epochDay);
+            textField.setText(text);
+            if (range != null)
+                range.endpointSelected(PDateChooser.this, epochDay);
+            listeners.fire(PDateChooser.this, text, EventQueue.getMostRecentEventTime(), 0);
+        }
+    };
 
     /**
      * Creates a PDateChooser without a text label.
@@ -80,7 +95,19 @@ public class PDateChooser extends JPanel implements ActionListener, DocumentList
 
         // create and add text field
         textField = new PShyTextField(10);
-        textField.getDocument().addDocumentListener(this);
+        validation = new PValidationBinder<Boolean>(textField.getDocument(),
+                new PValidationBinder.Validator<Boolean>() {
+                    @Override
+                    public Boolean validate(CharSequence text) {
+                        long epochDay = PIsoDateCodec.parse(text);
+                        return epochDay != PIsoDateCodec.INVALID && constraints.isAllowed(epochDay);
+                    }
+                }, new PValidationBinder.Handler<Boolean>() {
+                    @Override
+                    public void validated(Boolean result, Throwable error) {
+                        showValidity(result != null && result);
+                    }
+                });
         add(textField, BorderLayout.CENTER);
 
         // initialize state fields
@@ -96,77 +123,10 @@ public class PDateChooser extends JPanel implements ActionListener, DocumentList
         popupButton.setFadeBehavior(10, 200);
         add(popupButton, BorderLayout.LINE_END);
 
-        // set up popup
-        createPopup();
-
         // set popup to appear under button on-click
         popupButton.addActionListener(this);
     }
 
-    private void createPopup() {
-        popup = new JPopupMenu();
-        popup.setLayout(new BorderLayout());
-
-        // get selected date, if it exists
-        Calendar cal = Calendar.getInstance();
-        Date selectedDate = getDate();
-        if (selectedDate != null)
-            cal.setTime(selectedDate);
-
-        JPanel upperPanel = new JPanel(new BorderLayout(5, 0));
-
-        // create and add spinners
-        monthSpinner = new PHorizontalSpinField(MONTHS);
-        monthSpinner.setIndex(cal.get(Calendar.MONTH));
-        monthSpinner.setPreferredSize(new Dimension(120, 20));
-        monthSpinner.addActionListener(this);
-        upperPanel.add(monthSpinner, BorderLayout.CENTER);
-        yearSpinner = new PHorizontalSpinField(cal.get(Calendar.YEAR));
-        yearSpinner.addActionListener(this);
-        upperPanel.add(yearSpinner, BorderLayout.LINE_END);
-
-        // create and add day of the week labels
-        JPanel dayOfWeekLabels = new JPanel(new GridLayout(0, 7));
-        for (String day : DAYS) {
-            JLabel label = new JLabel(day);
-            label.setHorizontalAlignment(SwingConstants.CENTER);
-            dayOfWeekLabels.add(label);
-        }
-        upperPanel.add(dayOfWeekLabels, BorderLayout.PAGE_END);
-
-        popup.add(upperPanel, BorderLayout.PAGE_START);
-
-        // instantiate and add buttons for each day
-        JPanel datePanel = new JPanel(new GridLayout(0, 7));
-        buttons = new JButton[7 * 6];
-        for (int i = 0; i < 7 * 6; i++) {
-            buttons[i] = new JButton();
-            buttons[i].setMargin(new Insets(1, 1, 1, 0));
-            buttons[i].setHorizontalAlignment(SwingConstants.CENTER);
-            buttons[i].addActionListener(this);
-            datePanel.add(buttons[i]);
-        }
-        popup.add(datePanel, BorderLayout.CENTER);
-
-        // update popup before each appearance
-        popup.addPopupMenuListener(new PopupMenuListener() {
-            @Override
-            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
-                setDate(getText());
-            }
-
-            @Override
-            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
-                // do nothing
-            }
-
-            @Override
-            public void popupMenuCanceled(PopupMenuEvent e) {
-                // do nothing
-            }
-        });
-    }
-
     /**
      * Getter for the text displayed on the text label.
      * 
@@ -176,6 +136,37 @@ public class PDateChooser extends JPanel implements ActionListener, DocumentList
         return textField.getText();
     }
 
+    /**
+     * Setter for the text displayed on the text label. Unlike
+     * {@link #setDate(String)}, text which is not a valid date is kept and
+     * displayed as invalid.
+     * 
+     * @param text the text to display
+     */
+    public void setText(String text) {
+        textField.setText(text);
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to the date chooser. Listeners are
+     * notified when a date is picked from the calendar, with the date as the
+     * action command.
+     * 
+     * @param listener the <code>ActionListener</code> to be added
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from the date chooser.
+     * 
+     * @param listener the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Getter for the currently selected date. This is represented by the text
      * currently displayed on the label.
@@ -184,14 +175,12 @@ public class PDateChooser extends JPanel implements ActionListener, DocumentList
      */
     public Date getDate() {
 
-        try {
-            return DATE_FORMAT.parse(getText());
-        } catch (ParseException e) {
-            System.err.println("PDateChooser.getDate - could not parse date");
-        } catch (NullPointerException e) {
-            System.err.println("PDateChooser.getDate - null value");
-        }
+        String text = getText();
+        long epochDay = PIsoDateCodec.parse(text);
+        if (epochDay != PIsoDateCodec.INVALID)
+            return PIsoDateCodec.toDate(epochDay);
 
+        PDiagnostics.report(text == null ? NULL_DATE : UNPARSEABLE_DATE, this, text);
         return null;
     }
 
@@ -202,148 +191,103 @@ public class PDateChooser extends JPanel implements ActionListener, DocumentList
      */
     public void setDate(String s) {
 
-        Calendar cal = Calendar.getInstance();
-        try {
-            cal.setTime(DATE_FORMAT.parse(s));
+        long epochDay = PIsoDateCodec.parse(s);
+        if (epochDay != PIsoDateCodec.INVALID) {
             textField.setText(s);
-            monthSpinner.setIndex(cal.get(Calendar.MONTH));
-            yearSpinner.setIndex(cal.get(Calendar.YEAR));
-            updateButtons();
-        } catch (ParseException e) {
-            System.err.println("PDateChooser.setDate - could not parse date");
-            textField.setText("");
-        } catch (NullPointerException e) {
-            System.err.println("PDateChooser.setDate - null argument");
-            textField.setText("");
+            showMonth(epochDay);
+            return;
         }
+
+        PDiagnostics.report(s == null ? NULL_DATE : UNPARSEABLE_DATE, this, s);
+        textField.setText("");
     }
 
     /**
      * Setter for the date.
      * 
      * @param date the date to set
+     * @throws IllegalArgumentException if the date is outside the years 0 to
+     *             9999
      */
     public void setDate(Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        textField.setText(DATE_FORMAT.format(date));
-        monthSpinner.setIndex(cal.get(Calendar.MONTH));
-        yearSpinner.setIndex(cal.get(Calendar.YEAR));
-        updateButtons();
+        long epochDay = PIsoDateCodec.fromDate(date);
+        textField.setText(PIsoDateCodec.format(epochDay));
+        showMonth(epochDay);
     }
 
-    private void validateText() {
-
-        if (textField.getText().matches("\\d{4}-\\d{2}-\\d{2}")) {
-            try {
-                DATE_FORMAT.parse(textField.getText());
-                textField.setForeground(UIManager.getColor("TextField.foreground"));
-                valueValid = true;
-
-            } catch (ParseException e) {
-                textField.setForeground(Color.RED);
-                valueValid = false;
-            }
-        } else {
-            textField.setForeground(Color.RED);
-            valueValid = false;
-        }
-        textField.setDisabledTextColor(textField.getForeground());
+    /**
+     * Restricts the dates which may be chosen. Dates which are not allowed
+     * are disabled in the calendar, and are shown as invalid when typed.
+     * 
+     * @param constraints the constraints to apply, or null to allow any date
+     */
+    public void setConstraints(PDateConstraints constraints) {
+        this.constraints = constraints != null ? constraints : PDateConstraints.NONE;
+        validation.validateNow();
     }
 
     /**
-     * Checks whether the currently displayed string represents a valid date.
+     * Returns the constraints on the dates which may be chosen.
      * 
-     * @return true if valid, false otherwise
+     * @return the constraints, {@link PDateConstraints#NONE} if unrestricted
      */
-    public boolean isValueValid() {
-        return valueValid;
+    public PDateConstraints getConstraints() {
+        return constraints;
     }
 
-    private void updateButtons() {
-
-        // get selected date, or current date if text does not parse
-        Calendar selected = Calendar.getInstance();
-        Date selectedDate = getDate();
-        if (selectedDate != null)
-            selected.setTime(selectedDate);
-
-        // flip the date back to the first Sunday before month start
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.YEAR, yearSpinner.getIndex());
-        cal.set(Calendar.MONTH, monthSpinner.getIndex());
-        cal.set(Calendar.DATE, 1);
-        while (cal.get(Calendar.DAY_OF_WEEK) != Calendar.SUNDAY)
-            cal.add(Calendar.DATE, -1);
-
-        // create each button one by one
-        for (JButton b : buttons) {
-            // display the day of the month on the button
-            b.setText(Integer.toString(cal.get(Calendar.DATE)));
-            // store the corresponding date as an action command
-            b.setActionCommand(DATE_FORMAT.format(cal.getTime()));
-
-            // grey out days in other months
-            if (cal.get(Calendar.MONTH) != monthSpinner.getIndex()
-                    || cal.get(Calendar.YEAR) != yearSpinner.getIndex())
-                b.setForeground(Color.GRAY);
-
-            // highlight selected day red, or current day if none selected
-            else if (cal.get(Calendar.YEAR) == selected.get(Calendar.YEAR)
-                    && cal.get(Calendar.MONTH) == selected.get(Calendar.MONTH)
-                    && cal.get(Calendar.DATE) == selected.get(Calendar.DATE))
-                b.setForeground(Color.RED);
-
-            // color everything else normally
-            else
-                b.setForeground(UIManager.getColor("Button.foreground"));
-
-            // advance calendar for next button
-            cal.add(Calendar.DATE, 1);
-        }
+    /**
+     * Returns the document of the text field.
+     * 
+     * @return the text document
+     */
+    Document getDocument() {
+        return textField.getDocument();
     }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (e.getSource() == popupButton) {
-
-            // show popup
-            int x = popupButton.getPreferredSize().width - popup.getPreferredSize().width;
-            int y = popupButton.getPreferredSize().height;
-            popup.show(popupButton, x, y);
-
-        } else if (e.getSource() == monthSpinner) {
+    /**
+     * Makes this chooser an endpoint of a date range, whose days are then
+     * highlighted in the calendar.
+     * 
+     * @param range the range, or null
+     */
+    void setRange(PDateRangeChooser range) {
+        this.range = range;
+    }
 
-            // update year spinner if necessary
-            if (e.getActionCommand().equals("+") && monthSpinner.getIndex() == 0) {
-                yearSpinner.increment();
-            } else if (e.getActionCommand().equals("-") && monthSpinner.getIndex() == 11) {
-                yearSpinner.decrement();
-            }
+    private void showMonth(long epochDay) {
 
-            updateButtons();
+        // the popup only needs updating if it is open for this chooser
+        if (CalendarPopup.isShowingFor(popupClient))
+            CalendarPopup.getInstance().showMonth(epochDay);
+    }
 
-        } else if (e.getSource() == yearSpinner) {
-            updateButtons();
+    private void showValidity(boolean valid) {
 
-        } else {
-            textField.setText(e.getActionCommand());
-            popup.setVisible(false);
-        }
+        valueValid = valid;
+        textField.setForeground(valueValid ? UIManager.getColor("TextField.foreground") : Color.RED);
+        textField.setDisabledTextColor(textField.getForeground());
     }
 
-    @Override
-    public void insertUpdate(DocumentEvent e) {
-        validateText();
-    }
+    /**
+     * Checks whether the currently displayed string represents a valid date.
+     * 
+     * @return true if valid, false otherwise
+     */
+    public boolean isValueValid() {
 
-    @Override
-    public void removeUpdate(DocumentEvent e) {
-        validateText();
+        // text changes are validated in batches, so catch up first
+        validation.flush();
+        return valueValid;
     }
 
     @Override
-    public void changedUpdate(DocumentEvent e) {
-        validateText();
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == popupButton) {
+
+            // reject unparseable text, then show the shared popup
+            if (!getText().isEmpty())
+                setDate(getText());
+            CalendarPopup.getInstance().show(popupClient, popupButton);
+        }
     }
 }
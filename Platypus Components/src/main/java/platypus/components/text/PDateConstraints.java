@@ -0,0 +1,280 @@
+package platypus.components.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable set of rules restricting which dates may be chosen: a minimum
+ * and maximum date, excluded days of the week such as weekends, and excluded
+ * dates and date ranges such as holidays and blackout periods.
+ * <p>
+ * Excluded dates are indexed as bitsets over fixed blocks of days, so checking
+ * a date is a constant-time lookup however many years of holidays are loaded.
+ * Blocks without exclusions take no space, and blocks entirely covered by a
+ * range share a single array. Instances are built with a {@link Builder} and
+ * are safe to share between threads.
+ *
+ * @author Jingchen Xu
+ */
+public final class PDateConstraints {
+
+    /** constraints which allow every date */
+    public static final PDateConstraints NONE = new Builder().build();
+
+    // each block covers 512 days, i.e. 8 longs
+    private static final int BLOCK_SHIFT = 9;
+    private static final int BLOCK_DAYS = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_LONGS = BLOCK_DAYS / 64;
+    private static final long[] FULL_BLOCK = new long[BLOCK_LONGS];
+    static {
+        Arrays.fill(FULL_BLOCK, -1L);
+    }
+
+    // formats a day for messages, falling back to the raw epoch day
+    private static String describe(long epochDay) {
+        return PIsoDateCodec.isInRange(epochDay) ? PIsoDateCodec.format(epochDay)
+                : Long.toString(epochDay);
+    }
+
+    private final long minimum;
+    private final long maximum;
+    private final int excludedDaysOfWeek;
+    private final long firstBlock;
+    private final long[][] blocks;
+
+    private PDateConstraints(Builder builder) {
+
+        minimum = builder.minimum;
+        maximum = builder.maximum;
+        excludedDaysOfWeek = builder.excludedDaysOfWeek;
+
+        // pack the sparse blocks into one array covering their span
+        if (builder.blocks.isEmpty()) {
+            firstBlock = 0;
+            blocks = new long[0][];
+        } else {
+            long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+            for (long block : builder.blocks.keySet()) {
+                first = Math.min(first, block);
+                last = Math.max(last, block);
+            }
+            firstBlock = first;
+            blocks = new long[(int) (last - first + 1)][];
+            for (Map.Entry<Long, long[]> entry : builder.blocks.entrySet())
+                blocks[(int) (entry.getKey() - first)] = entry.getValue();
+        }
+    }
+
+    /**
+     * Checks whether a date may be chosen.
+     *
+     * @param epochDay the date
+     * @return true if no rule excludes the date
+     */
+    public boolean isAllowed(long epochDay) {
+
+        if (epochDay < minimum || epochDay > maximum
+                || (excludedDaysOfWeek & (1 << PIsoDateCodec.dayOfWeek(epochDay))) != 0)
+            return false;
+
+        long index = (epochDay >> BLOCK_SHIFT) - firstBlock;
+        if (index < 0 || index >= blocks.length)
+            return true;
+
+        long[] block = blocks[(int) index];
+        int bit = (int) (epochDay & (BLOCK_DAYS - 1));
+        return block == null || (block[bit >> 6] & (1L << bit)) == 0;
+    }
+
+    /**
+     * Returns the earliest date allowed.
+     *
+     * @return the minimum epoch day, or {@code Long.MIN_VALUE} if unbounded
+     */
+    public long getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * Returns the latest date allowed.
+     *
+     * @return the maximum epoch day, or {@code Long.MAX_VALUE} if unbounded
+     */
+    public long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * Builds {@link PDateConstraints}. A builder may be reused, and changes to
+     * it do not affect constraints already built.
+     */
+    public static class Builder {
+
+        private long minimum = Long.MIN_VALUE;
+        private long maximum = Long.MAX_VALUE;
+        private int excludedDaysOfWeek = 0;
+        private final Map<Long, long[]> blocks = new HashMap<Long, long[]>();
+        // blocks whose arrays are shared with built constraints
+        private final Set<Long> shared = new HashSet<Long>();
+
+        /**
+         * Sets the earliest date allowed.
+         *
+         * @param epochDay the minimum epoch day
+         * @return this builder
+         */
+        public Builder setMinimum(long epochDay) {
+            minimum = epochDay;
+            return this;
+        }
+
+        /**
+         * Sets the latest date allowed.
+         *
+         * @param epochDay the maximum epoch day
+         * @return this builder
+         */
+        public Builder setMaximum(long epochDay) {
+            maximum = epochDay;
+            return this;
+        }
+
+        /**
+         * Excludes a day of every week.
+         *
+         * @param dayOfWeek the day of the week, from 0 (Sunday) to 6
+         *            (Saturday)
+         * @return this builder
+         */
+        public Builder excludeDayOfWeek(int dayOfWeek) {
+
+            if (dayOfWeek < 0 || dayOfWeek > 6)
+                throw new IllegalArgumentException("Invalid day of week: " + dayOfWeek);
+
+            excludedDaysOfWeek |= 1 << dayOfWeek;
+            return this;
+        }
+
+        /**
+         * Excludes Saturdays and Sundays.
+         *
+         * @return this builder
+         */
+        public Builder excludeWeekends() {
+            return excludeDayOfWeek(0).excludeDayOfWeek(6);
+        }
+
+        /**
+         * Excludes a single date, such as a holiday.
+         *
+         * @param epochDay the date to exclude
+         * @return this builder
+         */
+        public Builder exclude(long epochDay) {
+            return excludeRange(epochDay, epochDay);
+        }
+
+        /**
+         * Excludes a range of dates, such as a blackout period.
+         *
+         * @param from the first date to exclude
+         * @param to the last date to exclude, inclusive
+         * @return this builder
+         */
+        public Builder excludeRange(long from, long to) {
+
+            if (from > to)
+                throw new IllegalArgumentException("Range ends before it starts: "
+                        + describe(from) + ".." + describe(to));
+
+            for (long block = from >> BLOCK_SHIFT; block <= to >> BLOCK_SHIFT; block++) {
+                long blockStart = block << BLOCK_SHIFT;
+                int first = (int) (Math.max(from, blockStart) - blockStart);
+                int last = (int) (Math.min(to, blockStart + BLOCK_DAYS - 1) - blockStart);
+
+                long[] bits = blocks.get(block);
+                if (bits == FULL_BLOCK)
+                    continue;
+
+                // whole blocks share one array rather than allocating
+                if (first == 0 && last == BLOCK_DAYS - 1) {
+                    blocks.put(block, FULL_BLOCK);
+                    continue;
+                }
+
+                if (bits == null) {
+                    bits = new long[BLOCK_LONGS];
+                    blocks.put(block, bits);
+                } else if (shared.remove(block)) {
+                    // copy on write, only once per block after each build
+                    bits = bits.clone();
+                    blocks.put(block, bits);
+                }
+                for (int bit = first; bit <= last; bit++)
+                    bits[bit >> 6] |= 1L << bit;
+            }
+
+            return this;
+        }
+
+        /**
+         * Reads excluded dates from a text source. Each line holds a date in
+         * {@code yyyy-MM-dd} format, or an inclusive range written as
+         * {@code yyyy-MM-dd..yyyy-MM-dd}. Blank lines and text following a
+         * {@code #} are ignored.
+         *
+         * @param reader the source to read; it is not closed
+         * @return this builder
+         * @throws IOException if reading fails or a line is not a valid date or
+         *             range
+         */
+        public Builder load(Reader reader) throws IOException {
+
+            BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader
+                    : new BufferedReader(reader);
+
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+
+                int comment = line.indexOf('#');
+                if (comment >= 0)
+                    line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                int separator = line.indexOf("..");
+                long from = PIsoDateCodec.parse(separator < 0 ? line
+                        : line.substring(0, separator).trim());
+                long to = separator < 0 ? from
+                        : PIsoDateCodec.parse(line.substring(separator + 2).trim());
+                if (from == PIsoDateCodec.INVALID || to == PIsoDateCodec.INVALID || from > to)
+                    throw new IOException("Invalid date or range on line " + lineNumber
+                            + ": " + line);
+
+                excludeRange(from, to);
+            }
+
+            return this;
+        }
+
+        /**
+         * Creates constraints from the rules added so far.
+         *
+         * @return the constraints
+         */
+        public PDateConstraints build() {
+            shared.addAll(blocks.keySet());
+            return new PDateConstraints(this);
+        }
+    }
+
+}
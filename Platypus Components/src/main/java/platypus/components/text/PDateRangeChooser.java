@@ -0,0 +1,417 @@
+package platypus.components.text;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Date;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import platypus.components.PActionListenerList;
+
+/**
+ * Swing component for selecting a range of dates. Consists of a start and an
+ * end {@link PDateChooser}, which share the same calendar popup, and a button
+ * offering preset ranges. While either calendar is open, the days of the
+ * range are highlighted.
+ * <p>
+ * Picking a start after the end, or an end before the start, moves the other
+ * endpoint to the same day, so the range is never inverted by the calendar.
+ *
+ * @author Jingchen Xu
+ */
+public class PDateRangeChooser extends JPanel {
+
+    private static final long serialVersionUID = 4720593176125006843L;
+
+    /**
+     * Commonly used ranges, relative to the current date.
+     */
+    public enum Preset {
+
+        /** the current day */
+        TODAY("Today") {
+            @Override
+            long start(long today) {
+                return today;
+            }
+
+            @Override
+            long end(long today) {
+                return today;
+            }
+        },
+
+        /** the previous day */
+        YESTERDAY("Yesterday") {
+            @Override
+            long start(long today) {
+                return today - 1;
+            }
+
+            @Override
+            long end(long today) {
+                return today - 1;
+            }
+        },
+
+        /** the seven days up to and including today */
+        LAST_7_DAYS("Last 7 days") {
+            @Override
+            long start(long today) {
+                return today - 6;
+            }
+
+            @Override
+            long end(long today) {
+                return today;
+            }
+        },
+
+        /** the thirty days up to and including today */
+        LAST_30_DAYS("Last 30 days") {
+            @Override
+            long start(long today) {
+                return today - 29;
+            }
+
+            @Override
+            long end(long today) {
+                return today;
+            }
+        },
+
+        /** the whole of the current month */
+        THIS_MONTH("This month") {
+            @Override
+            long start(long today) {
+                return today - PIsoDateCodec.dayOfMonth(today) + 1;
+            }
+
+            @Override
+            long end(long today) {
+                return start(today) + PIsoDateCodec.lengthOfMonth(
+                        PIsoDateCodec.year(today), PIsoDateCodec.month(today)) - 1;
+            }
+        },
+
+        /** the whole of the previous month */
+        LAST_MONTH("Last month") {
+            @Override
+            long start(long today) {
+                return THIS_MONTH.start(end(today));
+            }
+
+            @Override
+            long end(long today) {
+                return THIS_MONTH.start(today) - 1;
+            }
+        },
+
+        /** the whole of the current year */
+        THIS_YEAR("This year") {
+            @Override
+            long start(long today) {
+                return PIsoDateCodec.toEpochDay(PIsoDateCodec.year(today), 1, 1);
+            }
+
+            @Override
+            long end(long today) {
+                return PIsoDateCodec.toEpochDay(PIsoDateCodec.year(today), 12, 31);
+            }
+        };
+
+        private final String label;
+
+        private Preset(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the first day of the range.
+         *
+         * @param today the current epoch day
+         * @return the start of the range
+         */
+        abstract long start(long today);
+
+        /**
+         * Returns the last day of the range.
+         *
+         * @param today the current epoch day
+         * @return the end of the range, inclusive
+         */
+        abstract long end(long today);
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // UI components
+    private final PDateChooser startChooser;
+    private final PDateChooser endChooser;
+    private final JButton presetButton;
+    private JPopupMenu presetMenu;
+
+    // state fields
+    private final PActionListenerList listeners = new PActionListenerList();
+    private boolean boundsStale = true;
+    private long start;
+    private long end;
+
+    /**
+     * Creates an empty date range chooser.
+     */
+    public PDateRangeChooser() {
+        super(new GridBagLayout());
+
+        startChooser = new PDateChooser();
+        endChooser = new PDateChooser();
+        startChooser.setRange(this);
+        endChooser.setRange(this);
+
+        // re-read the endpoints only after they change
+        DocumentListener boundsListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                boundsStale = true;
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                boundsStale = true;
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                boundsStale = true;
+            }
+        };
+        startChooser.getDocument().addDocumentListener(boundsListener);
+        endChooser.getDocument().addDocumentListener(boundsListener);
+
+        // create presets button; the menu is built when first needed
+        presetButton = new JButton("\u25BE");
+        presetButton.setMargin(new Insets(0, 2, 0, 2));
+        presetButton.setToolTipText("Preset ranges");
+        presetButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JPopupMenu menu = getPresetMenu();
+                menu.show(presetButton, 0, presetButton.getHeight());
+            }
+        });
+
+        GridBagConstraints c = new GridBagConstraints(GridBagConstraints.RELATIVE, 0, 1, 1, 1, 0,
+                GridBagConstraints.CENTER, GridBagConstraints.HORIZONTAL,
+                new Insets(0, 0, 0, 0), 0, 0);
+        add(startChooser, c);
+        c.weightx = 0;
+        c.insets = new Insets(0, 4, 0, 4);
+        add(new JLabel("\u2013"), c);
+        c.weightx = 1;
+        c.insets = new Insets(0, 0, 0, 0);
+        add(endChooser, c);
+        c.weightx = 0;
+        c.fill = GridBagConstraints.VERTICAL;
+        add(presetButton, c);
+    }
+
+    private JPopupMenu getPresetMenu() {
+
+        if (presetMenu == null) {
+            presetMenu = new JPopupMenu();
+            for (final Preset preset : Preset.values()) {
+                JMenuItem item = new JMenuItem(preset.toString());
+                item.addActionListener(new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        applyPreset(preset);
+                    }
+                });
+                presetMenu.add(item);
+            }
+        }
+
+        return presetMenu;
+    }
+
+    /**
+     * Returns the chooser for the start of the range, e.g. to apply
+     * constraints.
+     *
+     * @return the start chooser
+     */
+    public PDateChooser getStartChooser() {
+        return startChooser;
+    }
+
+    /**
+     * Returns the chooser for the end of the range, e.g. to apply
+     * constraints.
+     *
+     * @return the end chooser
+     */
+    public PDateChooser getEndChooser() {
+        return endChooser;
+    }
+
+    /**
+     * Applies the same constraints to both endpoints.
+     *
+     * @param constraints the constraints to apply, or null to allow any date
+     */
+    public void setConstraints(PDateConstraints constraints) {
+        startChooser.setConstraints(constraints);
+        endChooser.setConstraints(constraints);
+    }
+
+    /**
+     * Sets the range.
+     *
+     * @param start the first day of the range
+     * @param end the last day of the range, inclusive
+     * @throws IllegalArgumentException if either day is outside the years 0
+     *             to 9999
+     */
+    public void setRange(long start, long end) {
+        startChooser.setText(PIsoDateCodec.format(start));
+        endChooser.setText(PIsoDateCodec.format(end));
+    }
+
+    /**
+     * Sets the range to a preset relative to the current date, and notifies
+     * listeners.
+     *
+     * @param preset the preset to apply
+     */
+    public void applyPreset(Preset preset) {
+
+        long today = PIsoDateCodec.today();
+        setRange(preset.start(today), preset.end(today));
+        listeners.fire(this, preset.name(), System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Returns the first day of the range.
+     *
+     * @return the start epoch day, or {@link PIsoDateCodec#INVALID} if the start
+     *         text is not a date
+     */
+    public long getStartDay() {
+        updateBounds();
+        return start;
+    }
+
+    /**
+     * Returns the last day of the range.
+     *
+     * @return the end epoch day, or {@link PIsoDateCodec#INVALID} if the end
+     *         text is not a date
+     */
+    public long getEndDay() {
+        updateBounds();
+        return end;
+    }
+
+    /**
+     * Returns the first day of the range as a {@code Date}.
+     *
+     * @return the start date, or null if the start text is not a date
+     */
+    public Date getStartDate() {
+        long day = getStartDay();
+        return day == PIsoDateCodec.INVALID ? null : PIsoDateCodec.toDate(day);
+    }
+
+    /**
+     * Returns the last day of the range as a {@code Date}.
+     *
+     * @return the end date, or null if the end text is not a date
+     */
+    public Date getEndDate() {
+        long day = getEndDay();
+        return day == PIsoDateCodec.INVALID ? null : PIsoDateCodec.toDate(day);
+    }
+
+    /**
+     * Checks whether both endpoints are valid dates and the start is not after
+     * the end.
+     *
+     * @return true if the range is valid
+     */
+    public boolean isRangeValid() {
+        return startChooser.isValueValid() && endChooser.isValueValid()
+                && getStartDay() <= getEndDay();
+    }
+
+    /**
+     * Checks whether a day lies within the range.
+     *
+     * @param epochDay the day to check
+     * @return true if both endpoints are set and the day is between them
+     */
+    public boolean isInRange(long epochDay) {
+        updateBounds();
+        return start != PIsoDateCodec.INVALID && end != PIsoDateCodec.INVALID
+                && epochDay >= start && epochDay <= end;
+    }
+
+    private void updateBounds() {
+
+        if (boundsStale) {
+            start = PIsoDateCodec.parse(startChooser.getText());
+            end = PIsoDateCodec.parse(endChooser.getText());
+            boundsStale = false;
+        }
+    }
+
+    /**
+     * Called when a day is picked from the calendar of one of the endpoints.
+     *
+     * @param chooser the endpoint picked for
+     * @param epochDay the day picked
+     */
+    void endpointSelected(PDateChooser chooser, long epochDay) {
+
+        // keep the range in order by moving the other endpoint
+        if (chooser == startChooser && getEndDay() != PIsoDateCodec.INVALID && epochDay > end)
+            endChooser.setText(PIsoDateCodec.format(epochDay));
+        else if (chooser == endChooser && getStartDay() != PIsoDateCodec.INVALID && epochDay < start)
+            startChooser.setText(PIsoDateCodec.format(epochDay));
+
+        listeners.fire(this, chooser == startChooser ? "start" : "end",
+                System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to the range chooser. Listeners are
+     * notified when an endpoint is picked from the calendar, with the command
+     * "start" or "end", or when a preset is applied, with the preset's name.
+     *
+     * @param listener the <code>ActionListener</code> to be added
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from the range chooser.
+     *
+     * @param listener the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
+}
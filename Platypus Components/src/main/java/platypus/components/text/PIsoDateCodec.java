@@ -0,0 +1,320 @@
+package platypus.components.text;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Parses, validates and formats ISO-8601 calendar dates of the form
+ * {@code yyyy-MM-dd}. Dates are represented as epoch days, i.e. the number of
+ * days since 1970-01-01 in the proleptic Gregorian calendar, so date
+ * arithmetic is plain integer arithmetic.
+ * <p>
+ * The codec holds no state, so it is safe to use from any thread. Parsing and
+ * validation use no regular expressions and allocate no objects.
+ *
+ * @author Jingchen Xu
+ */
+public final class PIsoDateCodec {
+
+    /** value returned by {@link #parse(CharSequence)} for invalid text */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /** length of a date in {@code yyyy-MM-dd} format */
+    public static final int LENGTH = 10;
+
+    /** earliest date which can be formatted and parsed, 0000-01-01 */
+    public static final long MIN_EPOCH_DAY = -719528;
+
+    /** latest date which can be formatted and parsed, 9999-12-31 */
+    public static final long MAX_EPOCH_DAY = 2932896;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int DAYS_PER_ERA = 146097;
+    private static final int DAYS_0000_TO_1970 = 719468;
+    private static final byte[] MONTH_LENGTHS = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private PIsoDateCodec() {}
+
+    /**
+     * Parses a date in {@code yyyy-MM-dd} format. The text must consist of
+     * exactly four year digits, two month digits and two day digits separated
+     * by hyphens, and must name a day that exists.
+     *
+     * @param text the text to parse
+     * @return the epoch day, or {@link #INVALID} if the text is null or not a
+     *         valid date
+     */
+    public static long parse(CharSequence text) {
+
+        if (text == null || text.length() != LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-')
+            return INVALID;
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1
+                || day > lengthOfMonth(year, month))
+            return INVALID;
+
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * Checks whether text is a valid date in {@code yyyy-MM-dd} format.
+     *
+     * @param text the text to check
+     * @return true if the text can be parsed
+     */
+    public static boolean isValid(CharSequence text) {
+        return parse(text) != INVALID;
+    }
+
+    // returns the decimal value of a run of digits, or -1 if any is not a digit
+    private static int digits(CharSequence text, int start, int end) {
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether an epoch day lies in the years 0 to 9999, which are the
+     * years that can be written in {@code yyyy-MM-dd} format.
+     *
+     * @param epochDay the date to check
+     * @return true if the date can be formatted
+     */
+    public static boolean isInRange(long epochDay) {
+        return epochDay >= MIN_EPOCH_DAY && epochDay <= MAX_EPOCH_DAY;
+    }
+
+    /**
+     * Formats an epoch day as {@code yyyy-MM-dd}.
+     *
+     * @param epochDay the date to format, from {@link #MIN_EPOCH_DAY} to
+     *            {@link #MAX_EPOCH_DAY}
+     * @return the formatted date
+     * @throws IllegalArgumentException if the date is out of range, including
+     *             {@link #INVALID}
+     */
+    public static String format(long epochDay) {
+
+        char[] buf = new char[LENGTH];
+        formatTo(epochDay, buf, 0);
+        return new String(buf);
+    }
+
+    /**
+     * Formats an epoch day as {@code yyyy-MM-dd} into a character array,
+     * without allocating.
+     *
+     * @param epochDay the date to format, from {@link #MIN_EPOCH_DAY} to
+     *            {@link #MAX_EPOCH_DAY}
+     * @param dest the array to write to, with room for {@link #LENGTH}
+     *            characters
+     * @param offset the index to start writing at
+     * @return the number of characters written, always {@link #LENGTH}
+     * @throws IllegalArgumentException if the date is out of range, including
+     *             {@link #INVALID}
+     */
+    public static int formatTo(long epochDay, char[] dest, int offset) {
+
+        // only write what parse accepts back
+        if (!isInRange(epochDay))
+            throw new IllegalArgumentException("date out of range: " + epochDay);
+
+        int year = (int) year(epochDay);
+        int pos = offset;
+        for (int i = pos + 3; i >= pos; i--) {
+            dest[i] = (char) ('0' + year % 10);
+            year /= 10;
+        }
+        pos += 4;
+
+        int month = month(epochDay);
+        int day = dayOfMonth(epochDay);
+        dest[pos++] = '-';
+        dest[pos++] = (char) ('0' + month / 10);
+        dest[pos++] = (char) ('0' + month % 10);
+        dest[pos++] = '-';
+        dest[pos++] = (char) ('0' + day / 10);
+        dest[pos++] = (char) ('0' + day % 10);
+
+        return pos - offset;
+    }
+
+    /**
+     * Converts a calendar date into an epoch day. The fields are not checked.
+     *
+     * @param year the year
+     * @param month the month, from 1 to 12
+     * @param day the day of the month, from 1
+     * @return the epoch day
+     */
+    public static long toEpochDay(long year, int month, int day) {
+
+        // count from March so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Returns the year of an epoch day.
+     *
+     * @param epochDay the date
+     * @return the year
+     */
+    public static long year(long epochDay) {
+
+        long z = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, DAYS_PER_ERA);
+        long dayOfEra = z - era * DAYS_PER_ERA;
+        long yearOfEra = yearOfEra(dayOfEra);
+        int marchMonth = marchMonth(dayOfEra, yearOfEra);
+
+        return yearOfEra + era * 400 + (marchMonth >= 10 ? 1 : 0);
+    }
+
+    /**
+     * Returns the month of an epoch day.
+     *
+     * @param epochDay the date
+     * @return the month, from 1 to 12
+     */
+    public static int month(long epochDay) {
+
+        long dayOfEra = Math.floorMod(epochDay + DAYS_0000_TO_1970, DAYS_PER_ERA);
+        int marchMonth = marchMonth(dayOfEra, yearOfEra(dayOfEra));
+
+        return marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+    }
+
+    /**
+     * Returns the day of the month of an epoch day.
+     *
+     * @param epochDay the date
+     * @return the day of the month, from 1
+     */
+    public static int dayOfMonth(long epochDay) {
+
+        long dayOfEra = Math.floorMod(epochDay + DAYS_0000_TO_1970, DAYS_PER_ERA);
+        long yearOfEra = yearOfEra(dayOfEra);
+        int dayOfYear = dayOfYear(dayOfEra, yearOfEra);
+
+        return dayOfYear - (153 * marchMonth(dayOfEra, yearOfEra) + 2) / 5 + 1;
+    }
+
+    /**
+     * Returns the day of the week of an epoch day.
+     *
+     * @param epochDay the date
+     * @return the day of the week, from 0 (Sunday) to 6 (Saturday)
+     */
+    public static int dayOfWeek(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return (int) Math.floorMod(epochDay + 4, 7L);
+    }
+
+    /**
+     * Checks whether a year is a leap year.
+     *
+     * @param year the year
+     * @return true if the year has a February 29
+     */
+    public static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Returns the number of days in a month.
+     *
+     * @param year the year
+     * @param month the month, from 1 to 12
+     * @return the length of the month
+     */
+    public static int lengthOfMonth(long year, int month) {
+        return month == 2 && isLeapYear(year) ? 29 : MONTH_LENGTHS[month - 1];
+    }
+
+    private static long yearOfEra(long dayOfEra) {
+        return (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    }
+
+    private static int dayOfYear(long dayOfEra, long yearOfEra) {
+        return (int) (dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100));
+    }
+
+    // month counted from March = 0
+    private static int marchMonth(long dayOfEra, long yearOfEra) {
+        return (5 * dayOfYear(dayOfEra, yearOfEra) + 2) / 153;
+    }
+
+    /**
+     * Returns the current date in the default time zone.
+     *
+     * @return today's epoch day
+     */
+    public static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Converts an epoch day into a {@code Date} at the start of that day in
+     * the default time zone.
+     *
+     * @param epochDay the date
+     * @return the corresponding {@code Date}
+     */
+    public static Date toDate(long epochDay) {
+        return toDate(epochDay, TimeZone.getDefault());
+    }
+
+    /**
+     * Converts an epoch day into a {@code Date} at the start of that day in a
+     * time zone.
+     *
+     * @param epochDay the date
+     * @param zone the time zone
+     * @return the corresponding {@code Date}
+     */
+    public static Date toDate(long epochDay, TimeZone zone) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(zone.toZoneId()).toInstant());
+    }
+
+    /**
+     * Converts a {@code Date} into the epoch day it falls on in the default
+     * time zone.
+     *
+     * @param date the date
+     * @return the epoch day
+     */
+    public static long fromDate(Date date) {
+        return fromDate(date, TimeZone.getDefault());
+    }
+
+    /**
+     * Converts a {@code Date} into the epoch day it falls on in a time zone.
+     * Allocates no objects.
+     *
+     * @param date the date
+     * @param zone the time zone
+     * @return the epoch day
+     */
+    public static long fromDate(Date date, TimeZone zone) {
+        long millis = date.getTime();
+        return Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+}
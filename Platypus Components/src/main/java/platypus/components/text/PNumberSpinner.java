@@ -4,18 +4,19 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 
 import javax.swing.JButton;
 import javax.swing.JPanel;
 
+import platypus.components.PAutoRepeater;
+
 /**
  * A number selection interface with a text field whose numerical value can be
  * incremented and decremented by up and down buttons.
  * <p>
  * The initial value of the text box and size of the increment produced by the
- * buttons can be set.
+ * buttons can be set. Holding a button down repeats it with increasing speed,
+ * updating the text field at most once per frame.
  * 
  * @author Jingchen Xu
  */
@@ -48,10 +49,11 @@ public class PNumberSpinner extends JPanel {
         upButton = new JButton("▲");
         upButton.setFont(new Font("Sans Serif", Font.PLAIN, 5));
         upButton.setMargin(new Insets(0, 1, 0, 1));
-        upButton.addActionListener(new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                numberField.setText(
-                        Integer.toString(Integer.parseInt(numberField.getText()) + increment));
+        PAutoRepeater.install(upButton, new PAutoRepeater.StepHandler() {
+            @Override
+            public void step(int steps, long when, int modifiers) {
+                numberField.setText(Integer.toString(
+                        Integer.parseInt(numberField.getText()) + steps * increment));
             }
         });
         GridBagConstraints upConstraints = new GridBagConstraints(1, 0, 1, 1, 0, 0.5,
@@ -61,11 +63,14 @@ public class PNumberSpinner extends JPanel {
         down = new JButton("▼");
         down.setFont(new Font("Sans Serif", Font.PLAIN, 5));
         down.setMargin(new Insets(0, 1, 0, 1));
-        down.addActionListener(new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                if (Integer.parseInt(numberField.getText()) >= increment)
-                    numberField.setText(
-                            Integer.toString(Integer.parseInt(numberField.getText()) - increment));
+        PAutoRepeater.install(down, new PAutoRepeater.StepHandler() {
+            @Override
+            public void step(int steps, long when, int modifiers) {
+                // only take as many steps as keep the number non-negative
+                int value = Integer.parseInt(numberField.getText());
+                int allowed = increment > 0 ? Math.min(steps, value / increment) : steps;
+                if (allowed > 0)
+                    numberField.setText(Integer.toString(value - allowed * increment));
             }
         });
         GridBagConstraints downConstraints = new GridBagConstraints(1, 1, 1, 1, 0, 0.5,
@@ -1,15 +1,33 @@
 package platypus.components.text;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.text.AbstractDocument;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import javax.swing.text.DocumentFilter;
 import javax.swing.text.PlainDocument;
+import javax.swing.text.Position;
 import javax.swing.text.AttributeSet;
 
 /**
  * A text field which restricts input based on a regular expression. Input into
  * the text field which does not match the regex will not be allowed to pass
  * into the underlying document and will not appear in the text field.
+ * <p>
+ * Input of at least {@link #getStreamingThreshold()} characters, such as a
+ * large paste, is filtered on a background thread while a progress monitor
+ * offers to cancel it. The field is read-only in the meantime, and the
+ * filtered text is inserted in a single edit once it is ready. Further long
+ * input arriving meanwhile is queued and filtered in turn. Text set with
+ * {@link #setText(String)} is always filtered immediately.
  * 
  * @author Jingchen Xu
  */
@@ -24,7 +42,27 @@ public class PRegexField extends JTextField {
     /** regex for numeric contents. */
     public static final String DIGITS_ONLY = "[\\D]";
 
+    /** regex for hexadecimal contents. */
+    public static final String HEX_ONLY = "[^0-9a-fA-F]";
+
+    /** regex for ASCII contents. */
+    public static final String ASCII_ONLY = "[^\\x00-\\x7F]";
+
+    /** default input length above which filtering is done in the background */
+    public static final int DEFAULT_STREAMING_THRESHOLD = 256 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     private String regex;
+    private InputFilter filter;
+
+    // streaming fields
+    private int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    private SwingWorker<String, Void> streaming;
+    private final ArrayDeque<PendingInput> queued = new ArrayDeque<PendingInput>();
+    private boolean editableBeforeStreaming;
+    private boolean synchronous = false; // filter even long input immediately
+    private boolean committing = false; // input is already filtered
 
     /**
      * Creates a text field with specified regular expression filter.
@@ -64,23 +102,219 @@ public class PRegexField extends JTextField {
         regex = newregex;
 
         if (regex.length() > 0) {
+            // compiled once and shared with other fields using the same regex
+            filter = InputFilter.forRegex(regex);
+
             PlainDocument doc = new PlainDocument();
             doc.setDocumentFilter(new DocumentFilter() {
 
                 @Override
                 public void insertString(FilterBypass fb, int off, String str, AttributeSet attr)
                         throws BadLocationException {
-                    fb.insertString(off, str.replaceAll(regex, ""), attr);
+                    if (isStreamed(str))
+                        stream(fb.getDocument(), off, 0, str, attr);
+                    else
+                        fb.insertString(off, committing ? str : filter.filter(str), attr);
                 }
 
                 @Override
                 public void replace(FilterBypass fb, int off, int len, String str,
                         AttributeSet attr) throws BadLocationException {
-                    fb.replace(off, len, str.replaceAll(regex, ""), attr);
+                    if (isStreamed(str))
+                        stream(fb.getDocument(), off, len, str, attr);
+                    else
+                        fb.replace(off, len, str == null || committing ? str : filter.filter(str), attr);
                 }
             });
 
             this.setDocument(doc);
         }
     }
+
+    /**
+     * Sets the input length at which filtering moves to a background thread.
+     * 
+     * @param threshold the number of characters, at least 1, or
+     *            <code>Integer.MAX_VALUE</code> to always filter immediately
+     * @throws IllegalArgumentException if the threshold is below 1
+     */
+    public void setStreamingThreshold(int threshold) {
+
+        if (threshold < 1)
+            throw new IllegalArgumentException("Threshold must be at least 1: " + threshold);
+        streamingThreshold = threshold;
+    }
+
+    /**
+     * Returns the input length at which filtering moves to a background
+     * thread.
+     * 
+     * @return the number of characters
+     */
+    public int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+     * Checks whether long input is still being filtered in the background.
+     * 
+     * @return true if filtered input is yet to be inserted
+     */
+    public boolean isStreaming() {
+        return streaming != null;
+    }
+
+    /**
+     * Sets the text, filtering it immediately regardless of its length. Any
+     * input still being filtered in the background is discarded.
+     */
+    @Override
+    public void setText(String t) {
+
+        cancelStreaming();
+        synchronous = true;
+        try {
+            super.setText(t);
+        } finally {
+            synchronous = false;
+        }
+    }
+
+    private boolean isStreamed(String str) {
+        return str != null && str.length() >= streamingThreshold && !synchronous && !committing
+                && SwingUtilities.isEventDispatchThread();
+    }
+
+    // queues long input to be filtered in the background before it replaces
+    // the given range
+    private void stream(Document doc, int off, int len, String str, AttributeSet attr)
+            throws BadLocationException {
+
+        // positions follow the range if the document changes in the meantime
+        queued.add(new PendingInput(doc, doc.createPosition(off), doc.createPosition(off + len),
+                str, attr));
+
+        if (streaming == null) {
+            editableBeforeStreaming = isEditable();
+            setEditable(false);
+            streamNext();
+        }
+    }
+
+    // starts filtering the next queued input, or ends streaming if none is left
+    private void streamNext() {
+
+        final PendingInput input = queued.poll();
+        if (input == null) {
+            finishStreaming();
+            return;
+        }
+
+        final InputFilter.Pass pass = filter.start(input.text);
+        final ProgressMonitor monitor = new ProgressMonitor(this, "Filtering input", null, 0, 100);
+
+        streaming = new SwingWorker<String, Void>() {
+
+            @Override
+            protected String doInBackground() {
+
+                while (!pass.step(CHUNK_SIZE)) {
+                    if (isCancelled())
+                        return null;
+                    setProgress((int) (100L * pass.getPosition() / pass.getLength()));
+                }
+                return pass.getResult();
+            }
+
+            @Override
+            protected void done() {
+
+                monitor.close();
+                if (streaming != this) // discarded by setText
+                    return;
+
+                // the monitor may have been canceled after its last update
+                try {
+                    if (!isCancelled() && !monitor.isCanceled())
+                        commit(input, this);
+                } finally {
+                    streamNext();
+                }
+            }
+        };
+
+        streaming.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent e) {
+                if (!"progress".equals(e.getPropertyName()) || e.getSource() != streaming)
+                    return;
+
+                // skip this input only; queued input is still filtered
+                monitor.setProgress((Integer) e.getNewValue());
+                if (monitor.isCanceled())
+                    streaming.cancel(false);
+            }
+        });
+        streaming.execute();
+    }
+
+    // inserts the filtered text of a finished worker
+    private void commit(PendingInput input, SwingWorker<String, Void> worker) {
+
+        String text;
+        try {
+            text = worker.get();
+        } catch (InterruptedException e) {
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        if (input.doc != getDocument())
+            return;
+
+        committing = true;
+        try {
+            int from = input.start.getOffset();
+            ((AbstractDocument) input.doc).replace(from, input.end.getOffset() - from, text,
+                    input.attr);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            committing = false;
+        }
+    }
+
+    // discards the input being filtered and any queued after it
+    private void cancelStreaming() {
+
+        queued.clear();
+        if (streaming != null) {
+            SwingWorker<String, Void> worker = streaming;
+            finishStreaming();
+            worker.cancel(false);
+        }
+    }
+
+    private void finishStreaming() {
+        streaming = null;
+        setEditable(editableBeforeStreaming);
+    }
+
+    // long input waiting to be filtered, with the range it replaces
+    private static final class PendingInput {
+
+        final Document doc;
+        final Position start;
+        final Position end;
+        final String text;
+        final AttributeSet attr;
+
+        PendingInput(Document doc, Position start, Position end, String text, AttributeSet attr) {
+            this.doc = doc;
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.attr = attr;
+        }
+    }
 }
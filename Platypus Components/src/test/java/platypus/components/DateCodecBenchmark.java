@@ -0,0 +1,106 @@
+package platypus.components;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import platypus.components.text.PIsoDateCodec;
+
+/**
+ * Compares date validation and formatting through {@link PIsoDateCodec} with
+ * the regex and {@code SimpleDateFormat} path previously used by
+ * {@code PDateChooser}.
+ *
+ * @author Jingchen Xu
+ */
+public class DateCodecBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 200000;
+
+    // a mix of valid dates and typical partial or mistyped input
+    private static final String[] INPUTS = { "2016-02-29", "2015-02-29", "1999-12-31",
+            "2000-01-01", "2016-13-01", "2016-1", "", "abcd-ef-gh", "2016-06-15", "2016-06-31" };
+
+    private static int sink;
+
+    /**
+     * The main method
+     *
+     * @param args command-line arguments (unused)
+     * @throws Exception if the old path fails unexpectedly
+     */
+    public static void main(String[] args) throws Exception {
+
+        // check both paths agree before timing them
+        SimpleDateFormat format = newFormat();
+        for (String input : INPUTS) {
+            if (oldIsValid(format, input) != PIsoDateCodec.isValid(input))
+                throw new IllegalStateException("Paths disagree on " + input);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("round %d: validate old %6.1f ns, codec %6.1f ns;"
+                    + " format old %6.1f ns, codec %6.1f ns%n", round,
+                    timeOldValidate(format), timeCodecValidate(),
+                    timeOldFormat(format), timeCodecFormat());
+        }
+        // print the sink so the timed work cannot be optimized away
+        System.out.println("checksum " + sink);
+    }
+
+    private static SimpleDateFormat newFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        return format;
+    }
+
+    private static boolean oldIsValid(SimpleDateFormat format, String text) {
+
+        if (!text.matches("\\d{4}-\\d{2}-\\d{2}"))
+            return false;
+        try {
+            format.parse(text);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    private static double timeOldValidate(SimpleDateFormat format) {
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += oldIsValid(format, INPUTS[i % INPUTS.length]) ? 1 : 0;
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static double timeCodecValidate() {
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += PIsoDateCodec.isValid(INPUTS[i % INPUTS.length]) ? 1 : 0;
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static double timeOldFormat(SimpleDateFormat format) {
+
+        Date date = new Date();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            date.setTime(i * 86400000L);
+            sink += format.format(date).length();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static double timeCodecFormat() {
+
+        char[] buf = new char[PIsoDateCodec.LENGTH];
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            sink += PIsoDateCodec.formatTo(i, buf, 0);
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+}
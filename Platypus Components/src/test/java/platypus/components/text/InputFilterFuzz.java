@@ -0,0 +1,86 @@
+package platypus.components.text;
+
+import java.util.Random;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compares {@link InputFilter} against {@code String.replaceAll} on random
+ * input, both when filtering at once and when filtering in steps through a
+ * {@link InputFilter.Pass}. Covers regexes taking the character class path
+ * as well as ones left to the regex engine.
+ *
+ * @author Jingchen Xu
+ */
+public class InputFilterFuzz {
+
+    private static final int TRIALS = 2000;
+    private static final int MAX_LENGTH = 24;
+    private static final long SEED = 5;
+
+    private static final String[] REGEXES = { "[\\D]", "[^0-9]", "[^0-9a-fA-F]",
+            "[^\\x00-\\x7F]", "\\D", "\\s", "[\\s\\d]", "[a-c-]", "[-x]", "[^\\w.]",
+            "[\\]\\\\]", "[\\t]", "\\t", "[^\\u0041-\\u005A]", "[0-9&&[^5]]", "[a-]", "a+",
+            "[\\p{L}]", "[^a-z\\W]", "[\\x41-\\x5a]", "[\ud800-\udfff]", "[^\\S\\n]", "" };
+
+    // digits, letters, whitespace, class metacharacters, and non-BMP text
+    private static final String ALPHABET = "09afAFz_ \t\n-].\\\u00e9\u4e2d\ud83d\ude00\u000b5";
+
+    /**
+     * The main method
+     *
+     * @param args command-line arguments (unused)
+     */
+    public static void main(String[] args) {
+
+        Random random = new Random(SEED);
+        for (String regex : REGEXES) {
+            InputFilter filter = InputFilter.forRegex(regex);
+            for (int trial = 0; trial < TRIALS; trial++)
+                check(regex, filter, randomText(random), random);
+            System.out.printf("%-20s ok, %s%n", regex, filter.getClass().getSimpleName());
+        }
+
+        // invalid regexes must still fail like the regex engine
+        try {
+            InputFilter.forRegex("[]");
+            throw new IllegalStateException("Invalid regex accepted");
+        } catch (PatternSyntaxException e) {
+            System.out.println("[] rejected");
+        }
+    }
+
+    private static String randomText(Random random) {
+
+        int length = random.nextInt(MAX_LENGTH);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        return sb.toString();
+    }
+
+    private static void check(String regex, InputFilter filter, String text, Random random) {
+
+        String expected = text.replaceAll(regex, "");
+
+        String filtered = filter.filter(text);
+        if (!expected.equals(filtered))
+            throw new IllegalStateException(describe(regex, text, expected, filtered));
+        if (expected.equals(text) && filtered != text)
+            throw new IllegalStateException("Copied unchanged text for " + regex);
+
+        // steps of random size, down to a single character
+        InputFilter.Pass pass = filter.start(text);
+        while (!pass.step(1 + random.nextInt(4))) {
+            if (pass.getPosition() > pass.getLength())
+                throw new IllegalStateException("Pass overran " + text.length() + " chars");
+        }
+        String stepped = pass.getResult();
+        if (!expected.equals(stepped))
+            throw new IllegalStateException("Pass: " + describe(regex, text, expected, stepped));
+    }
+
+    private static String describe(String regex, String text, String expected, String actual) {
+        return regex + " on [" + text + "]: expected [" + expected + "], got [" + actual + "]";
+    }
+
+}